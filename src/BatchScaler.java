@@ -0,0 +1,518 @@
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Skaliert viele Bilder unterschiedlicher Groesse parallel. Die Auftraege
+ * laufen auf einem ForkJoinPool, dessen Threads sich gegenseitig Arbeit
+ * stehlen: Grosse Bilder werden in Zeilenstreifen geteilt, die ueber
+ * Picture.scale mit Zielausschnitt einzeln berechnet und von freien Threads
+ * uebernommen werden. Kleine Bilder bleiben ganz, damit der Aufwand fuer das
+ * Aufteilen nicht den Gewinn uebersteigt. Kerne ohne endlichen Traeger (poly,
+ * cubic) werden nie geteilt, da jeder Streifen sonst das ganze Bild liest.
+ * <p/>
+ * Wartende Auftraege werden in der Reihenfolge aus dem Konstruktor gestartet:
+ * nach Frist (DEADLINE, Auftraege ohne Frist zuletzt, bei gleicher Frist die
+ * groessten zuerst), groesste zuerst (LARGEST_FIRST) oder kleinste zuerst
+ * (SMALLEST_FIRST). Je Auftrag kann der Fortschritt als Anteil der fertigen
+ * Zielzeilen abgefragt werden.
+ */
+public class BatchScaler {
+
+    public static final int DEADLINE = 0;
+    public static final int LARGEST_FIRST = 1;
+    public static final int SMALLEST_FIRST = 2;
+
+    /**
+     * Auftraege ab so vielen Zielpixeln werden in Streifen geteilt
+     */
+    static final long SPLIT_PIXELS = 1 << 20;
+
+    /**
+     * Mindestanzahl an Zielpixeln je Streifen
+     */
+    static final long MIN_BAND_PIXELS = 1 << 16;
+
+    /**
+     * Anzahl an Streifen je Thread, damit freie Threads noch etwas zu stehlen
+     * finden, wenn einzelne Streifen laenger dauern
+     */
+    static final int BANDS_PER_THREAD = 4;
+
+    private static final int WAITING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+
+    private final ForkJoinPool pool;
+    private final PriorityBlockingQueue<Job> queue;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * Ein Skalierauftrag. Ergebnis ist das skalierte Bild, bei Auftraegen mit
+     * Zieldatei nach dem Speichern.
+     */
+    public class Job implements Future<Picture> {
+
+        private final long number = sequence.getAndIncrement();
+        private final long deadline;
+        private final long size;
+        private final Picture source;
+        private final File input;
+        private final File output;
+        private final int width, height;
+        private final InterpolationKernel kernel;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final AtomicInteger rowsDone = new AtomicInteger();
+        private volatile int rows;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private Picture result;
+        private Throwable error;
+
+        private Job(Picture source, File input, File output, int width,
+                    int height, InterpolationKernel kernel, long deadline,
+                    long size) {
+            if (width < 1 || height < 1)
+                throw new IllegalArgumentException("Ungueltige Groesse "
+                        + width + "x" + height);
+            if (kernel == null)
+                throw new IllegalArgumentException("Kein Kern angegeben");
+            this.source = source;
+            this.input = input;
+            this.output = output;
+            this.width = width;
+            this.height = height;
+            this.kernel = kernel;
+            this.deadline = deadline;
+            this.size = size;
+        }
+
+        /**
+         * Frist in Millisekunden seit 1970, Long.MAX_VALUE fuer keine Frist
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Anteil der fertigen Zielzeilen zwischen 0 und 1
+         */
+        public double getProgress() {
+            if (state.get() == DONE)
+                return 1;
+            int total = rows;
+            return total == 0 ? 0 : (double) rowsDone.get() / total;
+        }
+
+        /**
+         * Gibt an, ob der Auftrag gerade berechnet wird
+         */
+        public boolean isRunning() {
+            return state.get() == RUNNING;
+        }
+
+        /**
+         * Entfernt einen noch wartenden Auftrag. Laufende Auftraege werden
+         * nicht abgebrochen.
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!state.compareAndSet(WAITING, CANCELLED))
+                return false;
+            queue.remove(this);
+            finished.countDown();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        @Override
+        public boolean isDone() {
+            return finished.getCount() == 0;
+        }
+
+        @Override
+        public Picture get() throws InterruptedException, ExecutionException {
+            finished.await();
+            return report();
+        }
+
+        @Override
+        public Picture get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException,
+                TimeoutException {
+            if (!finished.await(timeout, unit))
+                throw new TimeoutException();
+            return report();
+        }
+
+        private Picture report() throws ExecutionException {
+            if (state.get() == CANCELLED)
+                throw new CancellationException();
+            if (error != null)
+                throw new ExecutionException(error);
+            return result;
+        }
+
+        /**
+         * Berechnet den Auftrag im aufrufenden Thread des Pools
+         */
+        private void run() {
+            if (!state.compareAndSet(WAITING, RUNNING))
+                return;
+            running.incrementAndGet();
+            try {
+                result = output != null ? scaleFile() : scale(source, width,
+                        height);
+                completed.incrementAndGet();
+            } catch (Throwable e) {
+                error = e;
+                failed.incrementAndGet();
+            } finally {
+                state.set(DONE);
+                running.decrementAndGet();
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Liest input, skaliert es so, dass es in width x height passt, und
+         * speichert es nach output. Fuer Formate ohne Alphakanal wird wie im
+         * ScaleServer direkt nach TYPE_3BYTE_BGR skaliert.
+         */
+        private Picture scaleFile() throws IOException {
+            Picture picture = new Picture(input.getPath());
+            if (picture.isNull())
+                throw new IOException("Bild " + input + " nicht lesbar");
+            double factor = Math.min((double) width / picture.getWidth(),
+                    (double) height / picture.getHeight());
+            int newWidth = Math.max(1, (int) Math.round(picture.getWidth()
+                    * factor));
+            int newHeight = Math.max(1, (int) Math.round(picture.getHeight()
+                    * factor));
+
+            String name = output.getName();
+            String format = name.substring(name.lastIndexOf('.') + 1)
+                    .toLowerCase();
+            if ((format.equals("jpg") || format.equals("jpeg")
+                    || format.equals("bmp"))
+                    && picture.getImage().getType() != BufferedImage.TYPE_BYTE_GRAY)
+                picture.setOutputType(BufferedImage.TYPE_3BYTE_BGR);
+
+            Picture scaled = scale(picture, newWidth, newHeight);
+            OutputStream out = new FileOutputStream(output);
+            try {
+                if (!scaled.save(out, format))
+                    throw new IOException("Format " + format
+                            + " kann nicht geschrieben werden");
+            } finally {
+                out.close();
+            }
+            return scaled;
+        }
+
+        /**
+         * Skaliert picture auf newWidth x newHeight, ab SPLIT_PIXELS in
+         * Streifen. picture selbst bleibt unveraendert.
+         */
+        private Picture scale(Picture picture, int newWidth, int newHeight) {
+            rows = newHeight;
+            Rectangle all = new Rectangle(0, 0, picture.getWidth(),
+                    picture.getHeight());
+            long pixels = (long) newWidth * newHeight;
+            if (pixels < SPLIT_PIXELS || Double.isInfinite(kernel.getSupport())) {
+                Picture whole = copy(picture, picture.getImage());
+                whole.scale(all, newWidth, newHeight, kernel);
+                rowsDone.set(newHeight);
+                return whole;
+            }
+
+            int bandRows = (int) Math.max((MIN_BAND_PIXELS + newWidth - 1)
+                    / newWidth, (newHeight + BANDS_PER_THREAD
+                    * pool.getParallelism() - 1)
+                    / (BANDS_PER_THREAD * pool.getParallelism()));
+            int count = (newHeight + bandRows - 1) / bandRows;
+            BufferedImage[] bands = new BufferedImage[count];
+            new Bands(picture, all, newWidth, newHeight, bandRows, bands, 0,
+                    count).invoke();
+
+            ColorModel cm = bands[0].getColorModel();
+            WritableRaster raster = bands[0].getRaster()
+                    .createCompatibleWritableRaster(newWidth, newHeight);
+            for (int i = 0; i < count; i++) {
+                raster.setRect(0, i * bandRows, bands[i].getRaster());
+            }
+            return copy(picture, new BufferedImage(cm, raster,
+                    cm.isAlphaPremultiplied(), null));
+        }
+
+        /**
+         * Berechnet die Streifen from bis to-1 und teilt sie dazu rekursiv
+         * auf, sodass freie Threads die Haelften stehlen koennen
+         */
+        private class Bands extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final Picture picture;
+            private final Rectangle all;
+            private final int newWidth, newHeight, bandRows;
+            private final BufferedImage[] bands;
+            private final int from, to;
+
+            Bands(Picture picture, Rectangle all, int newWidth, int newHeight,
+                  int bandRows, BufferedImage[] bands, int from, int to) {
+                this.picture = picture;
+                this.all = all;
+                this.newWidth = newWidth;
+                this.newHeight = newHeight;
+                this.bandRows = bandRows;
+                this.bands = bands;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from > 1) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new Bands(picture, all, newWidth, newHeight,
+                            bandRows, bands, from, middle), new Bands(picture,
+                            all, newWidth, newHeight, bandRows, bands, middle,
+                            to));
+                    return;
+                }
+                int y = from * bandRows;
+                int h = Math.min(bandRows, newHeight - y);
+                Picture band = copy(picture, picture.getImage());
+                band.scale(all, newWidth, newHeight, new Rectangle(0, y,
+                        newWidth, h), kernel);
+                bands[from] = band.getImage();
+                rowsDone.addAndGet(h);
+            }
+        }
+    }
+
+    /**
+     * Erzeugt den Scheduler mit threads Threads und der Reihenfolge order
+     * (DEADLINE, LARGEST_FIRST oder SMALLEST_FIRST)
+     */
+    public BatchScaler(int threads, int order) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads muss >= 1 sein");
+        pool = new ForkJoinPool(threads);
+        queue = new PriorityBlockingQueue<Job>(64, comparator(order));
+    }
+
+    /**
+     * Erzeugt den Scheduler mit einem Thread je Prozessor, sortiert nach
+     * Frist
+     */
+    public BatchScaler() {
+        this(Runtime.getRuntime().availableProcessors(), DEADLINE);
+    }
+
+    private static Comparator<Job> comparator(final int order) {
+        if (order < DEADLINE || order > SMALLEST_FIRST)
+            throw new IllegalArgumentException("Unbekannte Reihenfolge "
+                    + order);
+        return new Comparator<Job>() {
+            @Override
+            public int compare(Job p, Job q) {
+                int c = 0;
+                if (order == DEADLINE)
+                    c = Long.compare(p.deadline, q.deadline);
+                if (c == 0)
+                    c = order == SMALLEST_FIRST ? Long.compare(p.size, q.size)
+                            : Long.compare(q.size, p.size);
+                return c != 0 ? c : Long.compare(p.number, q.number);
+            }
+        };
+    }
+
+    /**
+     * Skaliert eine Kopie von picture mit dessen Einstellungen auf width x
+     * height
+     */
+    public Job submit(Picture picture, int width, int height,
+                      InterpolationKernel kernel) {
+        return submit(picture, width, height, kernel, Long.MAX_VALUE);
+    }
+
+    /**
+     * Wie submit(picture, width, height, kernel) mit der Frist deadline in
+     * Millisekunden seit 1970
+     */
+    public Job submit(Picture picture, int width, int height,
+                      InterpolationKernel kernel, long deadline) {
+        if (picture.isNull())
+            throw new IllegalArgumentException("Leeres Bild");
+        long size = Math.max((long) width * height, (long) picture.getWidth()
+                * picture.getHeight());
+        return enqueue(new Job(picture, null, null, width, height, kernel,
+                deadline, size));
+    }
+
+    /**
+     * Liest input, skaliert es unter Beibehaltung des Seitenverhaeltnisses
+     * so, dass es in maxWidth x maxHeight passt, und speichert es nach output
+     * im Format der Dateiendung. Da die Bildgroesse erst beim Lesen bekannt
+     * ist, wird fuer die Reihenfolge die Dateigroesse verwendet.
+     */
+    public Job submit(File input, File output, int maxWidth, int maxHeight,
+                      InterpolationKernel kernel, long deadline) {
+        return enqueue(new Job(null, input, output, maxWidth, maxHeight,
+                kernel, deadline, input.length()));
+    }
+
+    /**
+     * Stellt job in die Warteschlange und gibt dem Pool eine Aufgabe, die
+     * beim Start den jeweils dringendsten wartenden Auftrag uebernimmt. Je
+     * Auftrag gibt es genau eine solche Aufgabe, daher bleibt keiner liegen.
+     */
+    private Job enqueue(Job job) {
+        queue.add(job);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                Job next = queue.poll();
+                if (next != null)
+                    next.run();
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Anzahl der noch nicht gestarteten Auftraege
+     */
+    public int getWaitingJobs() {
+        return queue.size();
+    }
+
+    public int getRunningJobs() {
+        return running.get();
+    }
+
+    public int getCompletedJobs() {
+        return completed.get();
+    }
+
+    public int getFailedJobs() {
+        return failed.get();
+    }
+
+    /**
+     * Nimmt keine neuen Auftraege mehr an, bereits eingereihte werden noch
+     * berechnet
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Neues Picture fuer img mit den Einstellungen von settings
+     */
+    private static Picture copy(Picture settings, BufferedImage img) {
+        Picture picture = new Picture(img);
+        picture.setLinearLight(settings.isLinearLight());
+        picture.setPeriodic(settings.isPeriodic());
+        picture.setOutputType(settings.getOutputType());
+        picture.setCompressionQuality(settings.getCompressionQuality());
+        picture.setProgressive(settings.isProgressive());
+        return picture;
+    }
+
+    /**
+     * Aufruf: BatchScaler [-threads n] [-kernel name] [-order deadline|largest|
+     * smallest] breite hoehe zielverzeichnis datei... Skaliert alle Dateien
+     * so, dass sie in breite x hoehe passen, und schreibt sie unter gleichem
+     * Namen in das Zielverzeichnis.
+     */
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String kernelName = "lanczos3";
+        int order = LARGEST_FIRST;
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("-"); i += 2) {
+            if (args[i].equals("-threads"))
+                threads = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("-kernel"))
+                kernelName = args[i + 1];
+            else if (args[i].equals("-order"))
+                order = args[i + 1].equals("deadline") ? DEADLINE
+                        : args[i + 1].equals("smallest") ? SMALLEST_FIRST
+                        : LARGEST_FIRST;
+        }
+        if (args.length - i < 4) {
+            System.out.println("Aufruf: BatchScaler [-threads n] [-kernel name]"
+                    + " [-order deadline|largest|smallest] breite hoehe"
+                    + " zielverzeichnis datei...");
+            return;
+        }
+        InterpolationKernel kernel = KernelRegistry.get(kernelName);
+        if (kernel == null)
+            throw new IllegalArgumentException("Unbekannter Kern " + kernelName);
+        int width = Integer.parseInt(args[i]);
+        int height = Integer.parseInt(args[i + 1]);
+        File target = new File(args[i + 2]);
+        target.mkdirs();
+
+        long start = System.nanoTime();
+        BatchScaler scaler = new BatchScaler(threads, order);
+        List<Job> jobs = new ArrayList<Job>();
+        for (int k = i + 3; k < args.length; k++) {
+            File input = new File(args[k]);
+            jobs.add(scaler.submit(input, new File(target, input.getName()),
+                    width, height, kernel, Long.MAX_VALUE));
+        }
+        scaler.shutdown();
+        while (!scaler.awaitTermination(1, TimeUnit.SECONDS)) {
+            System.out.println(scaler.getCompletedJobs() + scaler.getFailedJobs()
+                    + " von " + jobs.size() + " fertig, "
+                    + scaler.getRunningJobs() + " laufen");
+        }
+        for (Job job : jobs) {
+            try {
+                job.get();
+            } catch (ExecutionException e) {
+                System.out.println("FEHLER " + job.input + ": "
+                        + e.getCause().getMessage());
+            }
+        }
+        System.out.printf("%d Bilder in %.1f s, %d Fehler%n",
+                scaler.getCompletedJobs(), (System.nanoTime() - start) / 1e9,
+                scaler.getFailedJobs());
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Vergleicht Genauigkeit und Laufzeit der Interpolationsverfahren. Die
+ * Genauigkeit wird als maximaler Fehler auf einem feinen Gitter gegenueber
+ * der exakten Funktion gemessen, die Laufzeit beim Skalieren eines Bildes.
+ */
+public class Benchmark_Interpolation {
+
+    /**
+     * Anzahl an Auswertungsstellen fuer die Fehlermessung
+     */
+    static final int SAMPLES = 2000;
+
+    /**
+     * @param args optional der Pfad zum Testbild
+     */
+    public static void main(String[] args) throws Exception {
+        compareAccuracy();
+        compareScaling(args.length > 0 ? args[0] : "src/bilder/test.bmp");
+    }
+
+    private static void compareAccuracy() {
+        Function[] functions = {new Function("sin(x)") {
+            @Override
+            public double evaluate(double x) {
+                return Math.sin(x);
+            }
+        }, new Function("exp(x)") {
+            @Override
+            public double evaluate(double x) {
+                return Math.exp(x);
+            }
+        }, new Function("1/(1+x^2)") {
+            @Override
+            public double evaluate(double x) {
+                return 1.0 / (1 + x * x);
+            }
+        }};
+        String[] kernels = {"linear", "cubic", "catmull-rom", "lanczos3"};
+        int[] ns = {8, 16, 32, 64, 128};
+        double a = -5, b = 5;
+
+        System.out.println("Maximaler Fehler auf [" + a + ", " + b + "]");
+        for (Function f : functions) {
+            System.out.println(f.name);
+            for (int n : ns) {
+                String line = "  n = " + n;
+                double[] y = new double[n + 1];
+                for (int i = 0; i <= n; i++) {
+                    y[i] = f.evaluate(a + i * (b - a) / n);
+                }
+                for (String name : kernels) {
+                    InterpolationMethod method = KernelRegistry.get(name)
+                            .createInterpolation();
+                    method.init(a, b, n, y);
+                    double error = 0;
+                    for (int i = 0; i < SAMPLES; i++) {
+                        double z = a + i * (b - a) / (SAMPLES - 1);
+                        error = Math.max(error,
+                                Math.abs(method.evaluate(z) - f.evaluate(z)));
+                    }
+                    line += "\t" + name + ": " + String.format("%.3e", error);
+                }
+                System.out.println(line);
+            }
+        }
+        System.out.println("-------------------------------");
+    }
+
+    private static void compareScaling(String filename) throws Exception {
+        String[] kernels = {"linear", "cubic", "catmull-rom", "lanczos3"};
+        Picture original = new Picture(filename);
+        if (original.isNull()) {
+            System.out.println("Bild " + filename + " nicht gefunden");
+            return;
+        }
+        int newWidth = original.getWidth() * 2;
+        int newHeight = original.getHeight() * 2;
+
+        System.out.println("Skalieren von " + filename + " auf " + newWidth
+                + "x" + newHeight);
+        for (String name : kernels) {
+            /* Aufwaermen fuer den JIT */
+            for (int i = 0; i < 3; i++) {
+                new Picture(original.getImage()).scale(newWidth, newHeight,
+                        name);
+            }
+            int runs = 5;
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                new Picture(original.getImage()).scale(newWidth, newHeight,
+                        name);
+            }
+            double ms = (System.nanoTime() - start) / 1e6 / runs;
+            System.out.println("  " + name + ": "
+                    + String.format("%.1f", ms) + " ms");
+        }
+        System.out.println("-------------------------------");
+    }
+}
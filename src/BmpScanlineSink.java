@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Schreibt ein unkomprimiertes 24-Bit-BMP-Bild zeilenweise. Die Zeilen werden
+ * von oben nach unten abgelegt (negative Hoehe im Kopf), damit jede Zeile
+ * sofort geschrieben werden kann. Ein Alphakanal geht verloren.
+ */
+public class BmpScanlineSink implements ScanlineSink {
+
+    private final OutputStream out;
+
+    /**
+     * die aktuelle Zeile inklusive Auffuellung auf ein Vielfaches von 4 Bytes
+     */
+    private final byte[] line;
+
+    private final int width;
+
+    public BmpScanlineSink(OutputStream out, int width, int height)
+            throws IOException {
+        this.out = out;
+        this.width = width;
+        line = new byte[(width * 3 + 3) & ~3];
+
+        int imageSize = line.length * height;
+        byte[] header = new byte[54];
+        header[0] = 'B';
+        header[1] = 'M';
+        writeInt(header, 2, 54 + imageSize);
+        writeInt(header, 10, 54);
+        writeInt(header, 14, 40);
+        writeInt(header, 18, width);
+        writeInt(header, 22, -height);
+        header[26] = 1; /* Ebenen */
+        header[28] = 24; /* Bit je Pixel */
+        writeInt(header, 34, imageSize);
+        writeInt(header, 38, 2835); /* 72 dpi */
+        writeInt(header, 42, 2835);
+        out.write(header);
+    }
+
+    private static void writeInt(byte[] data, int i, int value) {
+        data[i] = (byte) value;
+        data[i + 1] = (byte) (value >> 8);
+        data[i + 2] = (byte) (value >> 16);
+        data[i + 3] = (byte) (value >> 24);
+    }
+
+    @Override
+    public void writeRow(int[] row) throws IOException {
+        for (int x = 0; x < width; x++) {
+            int argb = row[x];
+            line[3 * x] = (byte) argb;
+            line[3 * x + 1] = (byte) (argb >> 8);
+            line[3 * x + 2] = (byte) (argb >> 16);
+        }
+        out.write(line);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Die Klasse CatmullRom beschreibt die lokale kubische Faltung nach Keys mit
+ * dem Parameter -1/2 (Catmull-Rom-Spline). Im Gegensatz zu CubicSpline muss
+ * kein globales Gleichungssystem geloest werden: in jede Auswertung gehen nur
+ * die vier benachbarten Stuetzwerte ein. Am Rand werden die aeussersten
+ * Stuetzwerte fortgesetzt, ausserhalb der Stuetzgrenzen werden y[0] bzw. y[n]
+ * zurueckgegeben.
+ */
+public class CatmullRom implements InterpolationMethod {
+
+    /**
+     * linke und rechte Intervallgrenze x[0] bzw. x[n]
+     */
+    double a, b;
+
+    /**
+     * Anzahl an Intervallen
+     */
+    int n;
+
+    /**
+     * Intervallbreite
+     */
+    double h;
+
+    /**
+     * Stuetzwerte an den aequidistanten Stuetzstellen
+     */
+    double[] y;
+
+    @Override
+    public void init(double a, double b, int n, double[] y) {
+        this.a = a;
+        this.b = b;
+        this.n = n;
+        h = (b - a) / n;
+        this.y = y;
+    }
+
+    /**
+     * {@inheritDoc} Liegt z zwischen den Stuetzstellen x_i und x_i+1, wird das
+     * kubische Polynom durch y_i-1, y_i, y_i+1 und y_i+2 im transformierten
+     * Intervall [0,1] mit dem Horner-Schema ausgewertet.
+     */
+    @Override
+    public double evaluate(double z) {
+        if (z <= a) {
+            return y[0];
+        }
+        if (z >= b) {
+            return y[n];
+        }
+
+        double t = (z - a) / h;
+        int i = (int) t;
+        if (i >= n)
+            i = n - 1;
+        t -= i;
+
+        double y0 = y[i > 0 ? i - 1 : 0];
+        double y1 = y[i];
+        double y2 = y[i + 1];
+        double y3 = y[i + 2 <= n ? i + 2 : n];
+
+        return y1 + 0.5 * t * ((y2 - y0)
+                + t * ((2 * y0 - 5 * y1 + 4 * y2 - y3)
+                + t * (3 * (y1 - y2) + y3 - y0)));
+    }
+}
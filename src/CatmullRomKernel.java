@@ -0,0 +1,40 @@
+/**
+ * Kern der kubischen Faltung nach Keys mit Parameter -1/2 (Catmull-Rom)
+ */
+public class CatmullRomKernel implements InterpolationKernel {
+
+    @Override
+    public String getName() {
+        return "catmull-rom";
+    }
+
+    @Override
+    public double getSupport() {
+        return 2;
+    }
+
+    @Override
+    public boolean isSeparable() {
+        return true;
+    }
+
+    @Override
+    public boolean hasWeightTable() {
+        return true;
+    }
+
+    @Override
+    public double weight(double t) {
+        t = Math.abs(t);
+        if (t < 1)
+            return (1.5 * t - 2.5) * t * t + 1;
+        if (t < 2)
+            return ((-0.5 * t + 2.5) * t - 4) * t + 2;
+        return 0;
+    }
+
+    @Override
+    public InterpolationMethod createInterpolation() {
+        return new CatmullRom();
+    }
+}
@@ -0,0 +1,188 @@
+import java.util.Arrays;
+
+/**
+ * Polynominterpolation an den Tschebyscheff-Extremstellen
+ * x_j = (a+b)/2 + (b-a)/2 * cos(pi * (n-j) / n), j = 0,...,n, aufsteigend
+ * geordnet. Anders als bei aequidistanten Stuetzstellen bleibt der Interpolant
+ * auch fuer grosse n stabil (kein Runge-Phaenomen).
+ * <p/>
+ * Das Polynom wird in der Tschebyscheff-Basis p(x) = sum c_k T_k(t) mit
+ * t = (2x - a - b) / (b - a) dargestellt. Die Koeffizienten sind eine
+ * diskrete Kosinustransformation (DCT-I) der Stuetzwerte und werden mit der
+ * FFT in O(n log n) berechnet, ausgewertet wird mit dem Clenshaw-Verfahren in
+ * O(n).
+ * <p/>
+ * init(a, b, n, y) erwartet die Stuetzwerte daher an den Stellen aus
+ * points(a, b, n), nicht an aequidistanten Stellen.
+ */
+public class ChebyshevInterpolation implements InterpolationMethod {
+
+    /**
+     * Anzahl an Stellen, die bei der Auswertung vieler Stellen gemeinsam
+     * durch das Clenshaw-Verfahren laufen
+     */
+    static final int BLOCK = 256;
+
+    /**
+     * Intervall
+     */
+    double a, b;
+
+    /**
+     * Koeffizienten c_0,...,c_(size-1) in der Tschebyscheff-Basis
+     */
+    double[] c;
+
+    /**
+     * Anzahl der verwendeten Koeffizienten, nach truncate kleiner als c.length
+     */
+    int size;
+
+    /**
+     * Gibt die n+1 Tschebyscheff-Extremstellen in [a, b] aufsteigend zurueck
+     */
+    public static double[] points(double a, double b, int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n muss >= 0 sein");
+        double[] x = new double[n + 1];
+        if (n == 0) {
+            x[0] = (a + b) / 2;
+            return x;
+        }
+        for (int j = 0; j <= n; j++) {
+            /* sin statt cos, damit die Stellen symmetrisch exakt sind */
+            x[j] = (a + b) / 2 + (b - a) / 2
+                    * Math.sin(Math.PI * (2 * j - n) / (2 * n));
+        }
+        x[0] = a;
+        x[n] = b;
+        return x;
+    }
+
+    /**
+     * {@inheritDoc} Die Stuetzwerte y gehoeren zu den Stellen points(a, b, n).
+     */
+    @Override
+    public void init(double a, double b, int n, double[] y) {
+        if (y.length != n + 1)
+            throw new IllegalArgumentException("Es werden " + (n + 1)
+                    + " Stuetzwerte benoetigt, nicht " + y.length);
+        this.a = a;
+        this.b = b;
+        c = new double[n + 1];
+        size = n + 1;
+        if (n == 0) {
+            c[0] = y[0];
+            return;
+        }
+
+        /*
+         * DCT-I als FFT der geraden Fortsetzung der Laenge 2n. Die Stellen
+         * cos(pi j / n) laufen absteigend, y daher rueckwaerts lesen.
+         */
+        double[] re = new double[2 * n];
+        double[] im = new double[2 * n];
+        for (int j = 0; j <= n; j++) {
+            re[j] = y[n - j];
+        }
+        for (int j = 1; j < n; j++) {
+            re[2 * n - j] = re[j];
+        }
+        FFT.transform(re, im);
+        for (int k = 0; k <= n; k++) {
+            c[k] = re[k] / n;
+        }
+        c[0] /= 2;
+        c[n] /= 2;
+    }
+
+    /**
+     * Initialisiert direkt mit den Koeffizienten in der Tschebyscheff-Basis
+     */
+    public void init(double a, double b, double[] coefficients) {
+        if (coefficients.length == 0)
+            throw new IllegalArgumentException("Keine Koeffizienten");
+        this.a = a;
+        this.b = b;
+        c = coefficients.clone();
+        size = c.length;
+    }
+
+    /**
+     * Schneidet die Reihe hinter dem letzten Koeffizienten ab, dessen Betrag
+     * groesser als tolerance mal der groesste Betrag ist. Fuer glatte
+     * Funktionen fallen die Koeffizienten schnell ab, der Grad und damit der
+     * Aufwand jeder Auswertung sinkt dann deutlich, der Fehler steigt nur um
+     * etwa die Summe der weggelassenen Koeffizienten.
+     *
+     * @return Anzahl der verbleibenden Koeffizienten
+     */
+    public int truncate(double tolerance) {
+        if (tolerance < 0)
+            throw new IllegalArgumentException("tolerance muss >= 0 sein");
+        double max = 0;
+        for (int k = 0; k < size; k++) {
+            max = Math.max(max, Math.abs(c[k]));
+        }
+        int last = size - 1;
+        while (last > 0 && Math.abs(c[last]) <= tolerance * max) {
+            last--;
+        }
+        size = last + 1;
+        return size;
+    }
+
+    /**
+     * Gibt die (ggf. abgeschnittenen) Koeffizienten zurueck
+     */
+    public double[] getCoefficients() {
+        return Arrays.copyOf(c, size);
+    }
+
+    /**
+     * {@inheritDoc} Ausserhalb von [a, b] wird das Polynom fortgesetzt.
+     */
+    @Override
+    public double evaluate(double z) {
+        double t = (2 * z - a - b) / (b - a);
+        double t2 = 2 * t;
+        double b1 = 0, b2 = 0;
+        for (int k = size - 1; k >= 1; k--) {
+            double b0 = c[k] + t2 * b1 - b2;
+            b2 = b1;
+            b1 = b0;
+        }
+        return c[0] + t * b1 - b2;
+    }
+
+    /**
+     * Wertet das Polynom an allen Stellen z aus und schreibt die Ergebnisse
+     * nach out. Wie bei NewtonPolynom laufen die Stellen eines Blocks
+     * gemeinsam durch die Rekursion, die innere Schleife ist damit ohne
+     * Abhaengigkeiten zwischen den Schritten.
+     */
+    public void evaluate(double[] z, double[] out) {
+        double[] t = new double[Math.min(BLOCK, z.length)];
+        double[] b1 = new double[t.length];
+        double[] b2 = new double[t.length];
+        for (int start = 0; start < z.length; start += BLOCK) {
+            int count = Math.min(BLOCK, z.length - start);
+            for (int k = 0; k < count; k++) {
+                t[k] = (2 * z[start + k] - a - b) / (b - a);
+                b1[k] = 0;
+                b2[k] = 0;
+            }
+            for (int j = size - 1; j >= 1; j--) {
+                double cj = c[j];
+                for (int k = 0; k < count; k++) {
+                    double b0 = cj + 2 * t[k] * b1[k] - b2[k];
+                    b2[k] = b1[k];
+                    b1[k] = b0;
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                out[start + k] = c[0] + t[k] * b1[k] - b2[k];
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 3D-Farbtabelle (LUT) fuer die Farbkorrektur. Zu einem Gitter von size^3
+ * Farben im RGB-Wuerfel ist jeweils die Zielfarbe angegeben, dazwischen wird
+ * mit einer GridInterpolation3D tetraedrisch oder trilinear interpoliert.
+ * <p/>
+ * Fuer 8-Bit-Farben werden Gitterzelle und Anteil jeder der 256 Stufen je
+ * Kanal einmal vorberechnet, sodass apply je Pixel nur noch die vier bzw.
+ * acht Eintraege der Zelle liest. Tabellen koennen im .cube-Format gelesen
+ * werden.
+ */
+public class ColorLookupTable {
+
+    private final int size;
+    private final GridInterpolation3D grid;
+
+    /**
+     * die Farbwerte, skaliert auf 0 bis 255 und auf diesen Bereich begrenzt
+     */
+    private final float[] levels;
+
+    /**
+     * je Kanal und 8-Bit-Stufe: Index der Gitterzelle im Feld der Werte
+     * (bereits mit dem Abstand der Richtung multipliziert) und Anteil
+     * innerhalb der Zelle
+     */
+    private final int[][] cell = new int[3][256];
+    private final double[][] fraction = new double[3][256];
+
+    /**
+     * Tabelle ueber dem Einheitswuerfel
+     *
+     * @param size   Anzahl der Gitterpunkte je Richtung, mindestens 2
+     * @param values 3 * size^3 Farbwerte aus [0,1], Rot laeuft am
+     *               schnellsten, dann Gruen, dann Blau
+     */
+    public ColorLookupTable(int size, double[] values) {
+        this(size, values, new double[]{0, 0, 0}, new double[]{1, 1, 1});
+    }
+
+    /**
+     * Tabelle ueber dem Quader [min, max] je Grundfarbe
+     */
+    public ColorLookupTable(int size, double[] values, double[] min,
+                            double[] max) {
+        this.size = size;
+        grid = new GridInterpolation3D(min, max, size, size, size, 3, values);
+        levels = new float[3 * size * size * size];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = (float) (255 * Math.max(0, Math.min(1, values[i])));
+        }
+        int[] stride = {3, 3 * size, 3 * size * size};
+        for (int c = 0; c < 3; c++) {
+            double scale = (size - 1) / (max[c] - min[c]);
+            for (int level = 0; level < 256; level++) {
+                double u = (level / 255. - min[c]) * scale;
+                if (!(u > 0))
+                    u = 0;
+                if (u > size - 1)
+                    u = size - 1;
+                int i = Math.min((int) u, size - 2);
+                cell[c][level] = i * stride[c];
+                fraction[c][level] = u - i;
+            }
+        }
+    }
+
+    /**
+     * Erzeugt die Tabelle, die jede Farbe auf sich selbst abbildet
+     */
+    public static ColorLookupTable identity(int size) {
+        double[] values = new double[3 * size * size * size];
+        int p = 0;
+        for (int b = 0; b < size; b++) {
+            for (int g = 0; g < size; g++) {
+                for (int r = 0; r < size; r++) {
+                    values[p++] = r / (size - 1.);
+                    values[p++] = g / (size - 1.);
+                    values[p++] = b / (size - 1.);
+                }
+            }
+        }
+        return new ColorLookupTable(size, values);
+    }
+
+    /**
+     * Liest eine Tabelle im .cube-Format aus der Datei filename
+     */
+    public static ColorLookupTable read(String filename) throws IOException {
+        Reader in = new FileReader(filename);
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Liest eine Tabelle im .cube-Format. Unterstuetzt werden LUT_3D_SIZE,
+     * DOMAIN_MIN und DOMAIN_MAX, TITLE und Kommentare werden uebersprungen.
+     */
+    public static ColorLookupTable read(Reader reader) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        int size = 0;
+        double[] min = {0, 0, 0};
+        double[] max = {1, 1, 1};
+        double[] values = null;
+        int count = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] tokens = line.split("\\s+");
+            try {
+                if (tokens[0].equals("TITLE")) {
+                    continue;
+                } else if (tokens[0].equals("LUT_3D_SIZE")) {
+                    size = Integer.parseInt(tokens[1]);
+                    if (size < 2 || size > 256)
+                        throw new IOException("Ungueltige Tabellengroesse "
+                                + size);
+                    values = new double[3 * size * size * size];
+                } else if (tokens[0].equals("DOMAIN_MIN")) {
+                    for (int c = 0; c < 3; c++)
+                        min[c] = Double.parseDouble(tokens[c + 1]);
+                } else if (tokens[0].equals("DOMAIN_MAX")) {
+                    for (int c = 0; c < 3; c++)
+                        max[c] = Double.parseDouble(tokens[c + 1]);
+                } else if (Character.isLetter(tokens[0].charAt(0))) {
+                    throw new IOException("Nicht unterstuetzt: " + tokens[0]);
+                } else {
+                    if (values == null || count == values.length)
+                        throw new IOException("Unerwartete Farbwerte: " + line);
+                    for (int c = 0; c < 3; c++)
+                        values[count++] = Double.parseDouble(tokens[c]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Ungueltige Zeile: " + line);
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Ungueltige Zeile: " + line);
+            }
+        }
+        if (values == null || count != values.length)
+            throw new IOException("Unvollstaendige Tabelle");
+        return new ColorLookupTable(size, values, min, max);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Setzt den Interpolations-Modus, GridInterpolation3D.TRILINEAR oder
+     * GridInterpolation3D.TETRAHEDRAL (Standard)
+     */
+    public void setMode(int mode) {
+        grid.setMode(mode);
+    }
+
+    public int getMode() {
+        return grid.getMode();
+    }
+
+    /**
+     * Bildet die Farbe (r, g, b) ab und schreibt das Ergebnis nach out[0..2]
+     */
+    public void evaluate(double r, double g, double b, double[] out) {
+        grid.evaluate(r, g, b, out, 0);
+    }
+
+    /**
+     * Bildet length ARGB-Werte ab offset in argb an Ort und Stelle ab. Der
+     * Alphakanal bleibt unveraendert.
+     */
+    public void apply(int[] argb, int offset, int length) {
+        if (grid.getMode() == GridInterpolation3D.TRILINEAR)
+            applyTrilinear(argb, offset, length);
+        else
+            applyTetrahedral(argb, offset, length);
+    }
+
+    private void applyTetrahedral(int[] argb, int offset, int length) {
+        float[] lut = levels;
+        int[] cellR = cell[0], cellG = cell[1], cellB = cell[2];
+        double[] fracR = fraction[0], fracG = fraction[1], fracB = fraction[2];
+        int dr = 3, dg = 3 * size, db = 3 * size * size;
+        for (int p = offset; p < offset + length; p++) {
+            int pixel = argb[p];
+            int r = (pixel >> 16) & 0xFF;
+            int g = (pixel >> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            double fr = fracR[r], fg = fracG[g], fb = fracB[b];
+            int p0 = cellR[r] + cellG[g] + cellB[b];
+
+            /* wie in GridInterpolation3D.interpolate */
+            double f1, f2, f3;
+            int p1, p2;
+            if (fr >= fg) {
+                if (fg >= fb) {
+                    f1 = fr;
+                    f2 = fg;
+                    f3 = fb;
+                    p1 = p0 + dr;
+                    p2 = p1 + dg;
+                } else if (fr >= fb) {
+                    f1 = fr;
+                    f2 = fb;
+                    f3 = fg;
+                    p1 = p0 + dr;
+                    p2 = p1 + db;
+                } else {
+                    f1 = fb;
+                    f2 = fr;
+                    f3 = fg;
+                    p1 = p0 + db;
+                    p2 = p1 + dr;
+                }
+            } else {
+                if (fr >= fb) {
+                    f1 = fg;
+                    f2 = fr;
+                    f3 = fb;
+                    p1 = p0 + dg;
+                    p2 = p1 + dr;
+                } else if (fg >= fb) {
+                    f1 = fg;
+                    f2 = fb;
+                    f3 = fr;
+                    p1 = p0 + dg;
+                    p2 = p1 + db;
+                } else {
+                    f1 = fb;
+                    f2 = fg;
+                    f3 = fr;
+                    p1 = p0 + db;
+                    p2 = p1 + dg;
+                }
+            }
+            int p3 = p0 + dr + dg + db;
+            double w0 = 1 - f1, w1 = f1 - f2, w2 = f2 - f3;
+            int red = (int) (w0 * lut[p0] + w1 * lut[p1] + w2 * lut[p2] + f3
+                    * lut[p3] + 0.5);
+            int green = (int) (w0 * lut[p0 + 1] + w1 * lut[p1 + 1] + w2
+                    * lut[p2 + 1] + f3 * lut[p3 + 1] + 0.5);
+            int blue = (int) (w0 * lut[p0 + 2] + w1 * lut[p1 + 2] + w2
+                    * lut[p2 + 2] + f3 * lut[p3 + 2] + 0.5);
+            argb[p] = (pixel & 0xFF000000) | (red << 16) | (green << 8) | blue;
+        }
+    }
+
+    private void applyTrilinear(int[] argb, int offset, int length) {
+        double[] rgb = new double[3];
+        int[] cellR = cell[0], cellG = cell[1], cellB = cell[2];
+        double[] fracR = fraction[0], fracG = fraction[1], fracB = fraction[2];
+        for (int p = offset; p < offset + length; p++) {
+            int pixel = argb[p];
+            int r = (pixel >> 16) & 0xFF;
+            int g = (pixel >> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            grid.interpolate(cellR[r] + cellG[g] + cellB[b], fracR[r],
+                    fracG[g], fracB[b], rgb, 0);
+            argb[p] = (pixel & 0xFF000000) | (toByte(rgb[0]) << 16)
+                    | (toByte(rgb[1]) << 8) | toByte(rgb[2]);
+        }
+    }
+
+    private static int toByte(double c) {
+        if (c <= 0)
+            return 0;
+        if (c >= 1)
+            return 255;
+        return (int) (c * 255. + 0.5);
+    }
+}
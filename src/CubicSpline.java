@@ -33,6 +33,27 @@ public class CubicSpline implements InterpolationMethod {
      */
     double yprime[];
 
+    /**
+     * Gibt an, ob die Stuetzwerte periodisch mit der Periode (n+1)*h
+     * fortgesetzt werden, auf y[n] also wieder y[0] folgt
+     */
+    boolean periodic;
+
+    /**
+     * Schaltet die periodische Fortsetzung ein oder aus, z.B. fuer kachelbare
+     * Texturen. Die Ableitungen werden dann statt aus Randbedingungen aus
+     * einem zyklischen Gleichungssystem berechnet und evaluate setzt den
+     * Spline ausserhalb von [a, b] periodisch fort. Wirkt ab dem naechsten
+     * Aufruf von init.
+     */
+    public void setPeriodic(boolean periodic) {
+        this.periodic = periodic;
+    }
+
+    public boolean isPeriodic() {
+        return periodic;
+    }
+
     /**
      * {@inheritDoc} Zusaetzlich werden die Ableitungen der stueckweisen
      * Polynome an den Stuetzstellen berechnet. Als Randbedingungen setzten wir
@@ -52,6 +73,11 @@ public class CubicSpline implements InterpolationMethod {
         yprime[0] = 0;
         yprime[n] = 0;
 
+        if (periodic) {
+            computePeriodicDerivatives();
+            return;
+        }
+
 		/* Ableitungen berechnen. Nur noetig, wenn n > 1 */
         if (n > 1) {
             computeDerivatives();
@@ -67,9 +93,13 @@ public class CubicSpline implements InterpolationMethod {
 
     /**
      * Setzt die Ableitungen an den Raendern x[0] und x[n] neu auf yprime0 bzw.
-     * yprimen. Anschliessend werden alle Ableitungen aktualisiert.
+     * yprimen. Anschliessend werden alle Ableitungen aktualisiert. Im
+     * periodischen Modus gibt es keine Randbedingungen, der Aufruf bleibt
+     * dann ohne Wirkung.
      */
     public void setBoundaryConditions(double yprime0, double yprimen) {
+        if (periodic)
+            return;
         yprime[0] = yprime0;
         yprime[n] = yprimen;
         if (n > 1) {
@@ -79,54 +109,56 @@ public class CubicSpline implements InterpolationMethod {
 
     /**
      * Berechnet die Ableitungen der stueckweisen kubischen Polynome an den
-     * einzelnen Stuetzstellen. Dazu wird ein lineares System Ax=c mit einer
-     * Tridiagonalen Matrix A und der rechten Seite c aufgebaut und geloest.
-     * Anschliessend sind die berechneten Ableitungen y1' bis yn-1' in der
-     * Membervariable yprime gespeichert.
+     * einzelnen Stuetzstellen. Fuer i = 1,...,n-1 gilt
+     * y'_(i-1) + 4 y'_i + y'_(i+1) = 3 (y_(i+1) - y_(i-1)) / h, die bekannten
+     * Randwerte y'_0 und y'_n stehen dabei auf der rechten Seite. Das
+     * tridiagonale System wird mit TridiagonalMatrix geloest. Anschliessend
+     * sind die berechneten Ableitungen y1' bis yn-1' in der Membervariable
+     * yprime gespeichert.
      * <p/>
-     * Zum Zeitpunkt des Aufrufs stehen die Randbedingungen in yprime[0] und yprime[n].
-     * Speziell bei den "kleinen" Faellen mit Intervallzahlen n = 2
-     * oder 3 muss auf die Struktur des Gleichungssystems geachtet werden. Der
-     * Fall n = 1 wird hier nicht beachtet, da dann keine weiteren Ableitungen
-     * berechnet werden muessen.
+     * Zum Zeitpunkt des Aufrufs stehen die Randbedingungen in yprime[0] und
+     * yprime[n]. Der Fall n = 1 wird hier nicht beachtet, da dann keine
+     * weiteren Ableitungen berechnet werden muessen.
      */
     public void computeDerivatives() {
         int n = yprime.length - 1;
-        int len = n + 1;
-        double right[] = new double[len];
-        double a[] = new double[len];
-        double b[] = new double[len];
-
-        for (int i = 2; i <= n - 2; i++) {
-            right[i] = ((y[i + 1] - y[i - 1]) * 3) / h;
-        }
-        right[1] = ((y[2] - y[0] - ((h / 3) * yprime[0])) * 3) / h;
-        right[n - 1] = ((y[n] - y[n - 2] - ((h / 3) * yprime[n])) * 3) / h;
-
-        //trivial zur Berechnung von yprime[1]:
-        a[0] = 0;
-        b[0] = 1;
-
-        a[1] = right[1];
-        b[1] = -4;
-
-        for (int i = 2; i <= n - 2; i++) {
-            a[i] = right[i] - 4 * a[i - 1];
-            b[i] = -1 - 4 * b[i - 1];
+        int len = n - 1;
+        TridiagonalMatrix matrix = new TridiagonalMatrix(len);
+        double[] right = new double[len];
+        for (int i = 0; i < len; i++) {
+            matrix.diag[i] = 4;
+            if (i < len - 1) {
+                matrix.lower[i] = 1;
+                matrix.upper[i] = 1;
+            }
+            right[i] = 3 * (y[i + 2] - y[i]) / h;
         }
+        right[0] -= yprime[0];
+        right[len - 1] -= yprime[n];
+        System.arraycopy(matrix.solveLinearSystem(right), 0, yprime, 1, len);
+    }
 
-        a[n - 1] = (right[n - 1] - a[n - 3]) / 4;
-        b[n - 1] = -b[n - 3] / 4;
-
-        // die letzten beiden Zeilen berechnen BEIDE y[n-1] in Abhängigkeit von y[1]
-        // => y1 berechnen durch Gleichsetzen
-        yprime[1] = (a[n - 1] - a[n - 2]) / (b[n - 2] - b[n - 1]);
-
-        // wir haben ja schon alles in Abhängigkeit von y1
-
-        for (int i = 2; i <= n - 1; i++) {
-            yprime[i] = a[i - 1] + b[i - 1] * yprime[1];
+    /**
+     * Berechnet die Ableitungen fuer die periodische Fortsetzung. Mit N = n+1
+     * Stuetzstellen und zyklischen Indizes gilt fuer alle i
+     * y'_(i-1) + 4 y'_i + y'_(i+1) = 3 (y_(i+1) - y_(i-1)) / h, ein zyklisch
+     * tridiagonales System, das mit TridiagonalMatrix geloest wird.
+     */
+    private void computePeriodicDerivatives() {
+        int len = n + 1;
+        if (len < 2)
+            return;
+        TridiagonalMatrix matrix = new TridiagonalMatrix(len);
+        double[] right = new double[len];
+        for (int i = 0; i < len; i++) {
+            matrix.diag[i] = 4;
+            if (i < len - 1) {
+                matrix.lower[i] = 1;
+                matrix.upper[i] = 1;
+            }
+            right[i] = 3 * (y[(i + 1) % len] - y[(i + len - 1) % len]) / h;
         }
+        yprime = matrix.solveCyclicLinearSystem(right, 1, 1);
     }
 
     /**
@@ -137,6 +169,8 @@ public class CubicSpline implements InterpolationMethod {
      */
     @Override
     public double evaluate(double z) {
+        if (periodic)
+            return evaluatePeriodic(z);
         if (z <= a) {
             return y[0];
         }
@@ -159,4 +193,27 @@ public class CubicSpline implements InterpolationMethod {
                 (h * yprime[i] * ((z - (2 * zPower2)) + zPower3)) +
                 (h * yprime[i + 1] * (-zPower2 + zPower3));
     }
+
+    /**
+     * Wertet den periodisch fortgesetzten Spline aus. Das Intervall wird
+     * direkt aus z berechnet, das letzte Intervall verbindet y[n] mit y[0].
+     */
+    private double evaluatePeriodic(double z) {
+        if (n == 0)
+            return y[0];
+        int len = n + 1;
+        double t = (z - a) / h;
+        t -= Math.floor(t / len) * len;
+        int i = (int) t;
+        if (i > n)
+            i = n;
+        t -= i;
+        int next = i == n ? 0 : i + 1;
+
+        double t2 = t * t;
+        double t3 = t2 * t;
+        return y[i] * (1 - 3 * t2 + 2 * t3) + y[next] * (3 * t2 - 2 * t3)
+                + h * yprime[i] * (t - 2 * t2 + t3) + h * yprime[next]
+                * (t3 - t2);
+    }
 }
@@ -0,0 +1,38 @@
+/**
+ * Kern der kubischen Spline-Interpolation. Die Ableitungen an den
+ * Stuetzstellen haengen von allen Stuetzwerten ab, daher gibt es keine
+ * Gewichtstabelle.
+ */
+public class CubicSplineKernel implements InterpolationKernel {
+
+    @Override
+    public String getName() {
+        return "cubic";
+    }
+
+    @Override
+    public double getSupport() {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public boolean isSeparable() {
+        return true;
+    }
+
+    @Override
+    public boolean hasWeightTable() {
+        return false;
+    }
+
+    @Override
+    public double weight(double t) {
+        throw new UnsupportedOperationException(
+                "Kubische Splines haben keinen lokalen Kern");
+    }
+
+    @Override
+    public InterpolationMethod createInterpolation() {
+        return new CubicSpline();
+    }
+}
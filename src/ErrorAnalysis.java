@@ -0,0 +1,316 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fehleranalyse der Interpolationsverfahren ohne Oberflaeche. Fuer jede
+ * Kombination aus Funktion, Verfahren und Anzahl n an Intervallen wird der
+ * Interpolant auf aequidistanten Stuetzstellen in [a, b] aufgestellt und auf
+ * einem feinen Gitter mit der Funktion verglichen. Die Kombinationen werden
+ * parallel berechnet, das Ergebnis ist eine Konvergenztabelle mit maximalem
+ * Fehler, L2-Fehler, der beobachteten Konvergenzordnung und der Laufzeit je
+ * Auswertung, die als CSV oder JSON ausgegeben werden kann.
+ */
+public class ErrorAnalysis {
+
+    /**
+     * Mindestanzahl an Auswertungsstellen auf [a, b]
+     */
+    static final int SAMPLES = 10000;
+
+    /**
+     * Mindestanzahl an Auswertungsstellen je Intervall
+     */
+    static final int SAMPLES_PER_INTERVAL = 16;
+
+    /**
+     * Ergebnis fuer eine Kombination aus Funktion, Verfahren und n
+     */
+    public static class Result {
+        public final String function;
+        public final String kernel;
+        public final int n;
+        public final double maxError;
+        public final double l2Error;
+        /**
+         * Laufzeit einer Auswertung in ns
+         */
+        public final double evaluateNanos;
+        /**
+         * beobachtete Ordnung des maximalen Fehlers gegenueber dem
+         * vorherigen n, NaN fuer das kleinste n
+         */
+        double rate = Double.NaN;
+
+        Result(String function, String kernel, int n, double maxError,
+               double l2Error, double evaluateNanos) {
+            this.function = function;
+            this.kernel = kernel;
+            this.n = n;
+            this.maxError = maxError;
+            this.l2Error = l2Error;
+            this.evaluateNanos = evaluateNanos;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+    }
+
+    private final List<Function> functions = new ArrayList<Function>();
+    private String[] kernels = KernelRegistry.getNames();
+    private int[] sizes = {4, 8, 16, 32, 64, 128, 256};
+    private double a = -5, b = 5;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Erzeugt eine Analyse mit den Beispielfunktionen aus dem Plotter
+     */
+    public ErrorAnalysis() {
+        for (int i = 0; i < 3; i++) {
+            functions.add(Function.get(i));
+        }
+    }
+
+    /**
+     * Fuegt eine weitere zu interpolierende Funktion hinzu
+     */
+    public void addFunction(Function f) {
+        functions.add(f);
+    }
+
+    /**
+     * Entfernt alle Funktionen, z.B. um nur eigene zu untersuchen
+     */
+    public void clearFunctions() {
+        functions.clear();
+    }
+
+    /**
+     * Legt die zu untersuchenden Kerne fest (Namen aus KernelRegistry)
+     */
+    public void setKernels(String... kernels) {
+        for (String name : kernels) {
+            if (KernelRegistry.get(name) == null)
+                throw new IllegalArgumentException("Unbekannter Kern " + name);
+        }
+        this.kernels = kernels.clone();
+    }
+
+    /**
+     * Legt die Anzahlen an Intervallen fest, sie werden aufsteigend sortiert
+     */
+    public void setSizes(int... sizes) {
+        for (int n : sizes) {
+            if (n < 1)
+                throw new IllegalArgumentException("n muss positiv sein: " + n);
+        }
+        this.sizes = sizes.clone();
+        Arrays.sort(this.sizes);
+    }
+
+    public void setInterval(double a, double b) {
+        if (!(b > a))
+            throw new IllegalArgumentException("Leeres Intervall [" + a
+                    + ", " + b + "]");
+        this.a = a;
+        this.b = b;
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Mindestens ein Thread");
+        this.threads = threads;
+    }
+
+    /**
+     * Berechnet alle Kombinationen parallel. Die Ergebnisse sind nach
+     * Funktion, Kern und n geordnet.
+     */
+    public List<Result> run() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>();
+            for (final Function f : functions) {
+                for (final String kernel : kernels) {
+                    for (final int n : sizes) {
+                        futures.add(executor.submit(new Callable<Result>() {
+                            @Override
+                            public Result call() {
+                                return measure(f, KernelRegistry.get(kernel),
+                                        n);
+                            }
+                        }));
+                    }
+                }
+            }
+
+            List<Result> results = new ArrayList<Result>(futures.size());
+            Result previous = null;
+            for (Future<Result> future : futures) {
+                Result r;
+                try {
+                    r = future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+                if (previous != null && previous.function.equals(r.function)
+                        && previous.kernel.equals(r.kernel)) {
+                    r.rate = Math.log(previous.maxError / r.maxError)
+                            / Math.log((double) r.n / previous.n);
+                }
+                results.add(r);
+                previous = r;
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Misst den Fehler des Interpolanten von f mit n Intervallen. Der
+     * L2-Fehler ist die Wurzel aus dem Integral des quadrierten Fehlers ueber
+     * [a, b], berechnet mit der Trapezregel auf dem feinen Gitter.
+     */
+    Result measure(Function f, InterpolationKernel kernel, int n) {
+        double[] y = new double[n + 1];
+        for (int i = 0; i <= n; i++) {
+            y[i] = f.evaluate(a + i * (b - a) / n);
+        }
+        InterpolationMethod method = kernel.createInterpolation();
+        method.init(a, b, n, y);
+
+        int samples = Math.max(SAMPLES, SAMPLES_PER_INTERVAL * n) + 1;
+        double h = (b - a) / (samples - 1);
+        double[] p = new double[samples];
+        long start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            p[i] = method.evaluate(a + i * h);
+        }
+        double nanos = (double) (System.nanoTime() - start) / samples;
+
+        double max = 0, sum = 0;
+        for (int i = 0; i < samples; i++) {
+            double e = Math.abs(p[i] - f.evaluate(a + i * h));
+            /* NaN bzw. unendliche Werte sollen nicht untergehen */
+            if (!(e <= max))
+                max = e;
+            double e2 = e * e;
+            sum += (i == 0 || i == samples - 1) ? e2 / 2 : e2;
+        }
+        return new Result(f.name, kernel.getName(), n, max,
+                Math.sqrt(sum * h), nanos);
+    }
+
+    /**
+     * Schreibt die Ergebnisse als CSV mit Kopfzeile
+     */
+    public static void writeCsv(List<Result> results, Writer out) {
+        PrintWriter writer = new PrintWriter(out);
+        writer.println("function,kernel,n,max_error,l2_error,rate,evaluate_ns");
+        for (Result r : results) {
+            writer.println(csv(r.function) + "," + csv(r.kernel) + "," + r.n
+                    + "," + number(r.maxError) + "," + number(r.l2Error) + ","
+                    + number(r.rate) + "," + number(r.evaluateNanos));
+        }
+        writer.flush();
+    }
+
+    /**
+     * Schreibt die Ergebnisse als JSON-Feld von Objekten. Nicht endliche
+     * Werte werden als null geschrieben.
+     */
+    public static void writeJson(List<Result> results, Writer out) {
+        PrintWriter writer = new PrintWriter(out);
+        writer.println("[");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            writer.print("  {\"function\": " + json(r.function)
+                    + ", \"kernel\": " + json(r.kernel) + ", \"n\": " + r.n
+                    + ", \"maxError\": " + jsonNumber(r.maxError)
+                    + ", \"l2Error\": " + jsonNumber(r.l2Error)
+                    + ", \"rate\": " + jsonNumber(r.rate)
+                    + ", \"evaluateNanos\": " + jsonNumber(r.evaluateNanos)
+                    + "}");
+            writer.println(i + 1 < results.size() ? "," : "");
+        }
+        writer.println("]");
+        writer.flush();
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%.6e",
+                value);
+    }
+
+    private static String jsonNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return "null";
+        return String.format(Locale.ROOT, "%.6e", value);
+    }
+
+    private static String csv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0)
+            return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private static String json(String s) {
+        StringBuilder result = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                result.append('\\').append(c);
+            else if (c < 0x20)
+                result.append(String.format("\\u%04x", (int) c));
+            else
+                result.append(c);
+        }
+        return result.append('"').toString();
+    }
+
+    /**
+     * Aufruf: ErrorAnalysis [csv|json] [ausgabedatei] [kerne]
+     * <p/>
+     * kerne ist eine kommagetrennte Liste von Namen aus KernelRegistry, ohne
+     * Angabe werden alle Kerne untersucht. Ohne Ausgabedatei oder mit "-"
+     * wird auf die Standardausgabe geschrieben.
+     */
+    public static void main(String[] args) throws IOException,
+            InterruptedException {
+        String format = args.length > 0 ? args[0] : "csv";
+        if (!format.equals("csv") && !format.equals("json")) {
+            System.out.println("Aufruf: ErrorAnalysis [csv|json] [ausgabedatei] [kerne]");
+            return;
+        }
+        ErrorAnalysis analysis = new ErrorAnalysis();
+        if (args.length > 2)
+            analysis.setKernels(args[2].split(","));
+        List<Result> results = analysis.run();
+
+        Writer out = args.length > 1 && !args[1].equals("-") ? new FileWriter(
+                args[1]) : new OutputStreamWriter(System.out);
+        try {
+            if (format.equals("csv"))
+                writeCsv(results, out);
+            else
+                writeJson(results, out);
+        } finally {
+            out.flush();
+            if (out instanceof FileWriter)
+                out.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Schnelle Fourier-Transformation beliebiger Laenge. Ist die Laenge eine
+ * Zweierpotenz, wird der iterative Radix-2-Algorithmus verwendet, sonst der
+ * Algorithmus von Bluestein, der die Transformation als Faltung schreibt und
+ * diese mit Radix-2-Transformationen berechnet. Der Aufwand ist in beiden
+ * Faellen O(n log n).
+ */
+class FFT {
+
+    private FFT() {
+    }
+
+    /**
+     * Berechnet X_k = sum_j x_j * exp(-2 pi i j k / n) auf den Feldern re
+     * und im (Real- und Imaginaerteil) an Ort und Stelle
+     */
+    static void transform(double[] re, double[] im) {
+        int n = re.length;
+        if (n <= 1)
+            return;
+        if ((n & (n - 1)) == 0)
+            radix2(re, im);
+        else
+            bluestein(re, im);
+    }
+
+    /**
+     * Iterative Radix-2-Transformation, n muss eine Zweierpotenz sein
+     */
+    private static void radix2(double[] re, double[] im) {
+        int n = re.length;
+
+        /* Bitumkehr-Permutation */
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        for (int length = 2; length <= n; length <<= 1) {
+            int half = length >> 1;
+            double angle = -2 * Math.PI / length;
+            /* Drehfaktoren einmal je Stufe, nicht per Rekursion aufsummiert */
+            double[] cos = new double[half];
+            double[] sin = new double[half];
+            for (int k = 0; k < half; k++) {
+                cos[k] = Math.cos(angle * k);
+                sin[k] = Math.sin(angle * k);
+            }
+            for (int start = 0; start < n; start += length) {
+                for (int k = 0; k < half; k++) {
+                    int u = start + k, v = u + half;
+                    double tr = re[v] * cos[k] - im[v] * sin[k];
+                    double ti = re[v] * sin[k] + im[v] * cos[k];
+                    re[v] = re[u] - tr;
+                    im[v] = im[u] - ti;
+                    re[u] += tr;
+                    im[u] += ti;
+                }
+            }
+        }
+    }
+
+    /**
+     * Algorithmus von Bluestein: mit jk = (j^2 + k^2 - (k-j)^2) / 2 wird
+     * X_k = w_k * sum_j (x_j * w_j) * conj(w_(k-j)) mit w_j = exp(-pi i j^2
+     * / n), also eine Faltung, die mit Zweierpotenz-Laenge berechnet wird.
+     */
+    private static void bluestein(double[] re, double[] im) {
+        int n = re.length;
+        int m = Integer.highestOneBit(2 * n - 1);
+        if (m < 2 * n - 1)
+            m <<= 1;
+
+        /* j^2 modulo 2n, damit der Winkel auch fuer grosse j genau bleibt */
+        double[] wr = new double[n];
+        double[] wi = new double[n];
+        for (int j = 0; j < n; j++) {
+            long square = (long) j * j % (2L * n);
+            double angle = Math.PI * square / n;
+            wr[j] = Math.cos(angle);
+            wi[j] = -Math.sin(angle);
+        }
+
+        double[] ar = new double[m];
+        double[] ai = new double[m];
+        for (int j = 0; j < n; j++) {
+            ar[j] = re[j] * wr[j] - im[j] * wi[j];
+            ai[j] = re[j] * wi[j] + im[j] * wr[j];
+        }
+        double[] br = new double[m];
+        double[] bi = new double[m];
+        br[0] = wr[0];
+        bi[0] = -wi[0];
+        for (int j = 1; j < n; j++) {
+            br[j] = br[m - j] = wr[j];
+            bi[j] = bi[m - j] = -wi[j];
+        }
+
+        radix2(ar, ai);
+        radix2(br, bi);
+        for (int k = 0; k < m; k++) {
+            double r = ar[k] * br[k] - ai[k] * bi[k];
+            double i = ar[k] * bi[k] + ai[k] * br[k];
+            /* konjugieren fuer die Ruecktransformation */
+            ar[k] = r;
+            ai[k] = -i;
+        }
+        radix2(ar, ai);
+
+        for (int k = 0; k < n; k++) {
+            double r = ar[k] / m;
+            double i = -ai[k] / m;
+            re[k] = r * wr[k] - i * wi[k];
+            im[k] = r * wi[k] + i * wr[k];
+        }
+    }
+}
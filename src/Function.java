@@ -0,0 +1,54 @@
+/**
+ * Reellwertige Funktion mit Namen fuer die Anzeige, z.B. als Vorgabe fuer
+ * die Interpolation im InterpolationsPlotter und in ErrorAnalysis
+ */
+public abstract class Function {
+    public String name;
+
+    public Function(String name) {
+        this.name = name;
+    }
+
+    public abstract double evaluate(double x);
+
+    /**
+     * Gibt eine der Beispielfunktionen zurueck: 0 = sin(x), 1 = exp(x),
+     * 2 = 1/(1+x^2) (Runge), sonst die Nullfunktion
+     */
+    static Function get(int index) {
+        switch (index) {
+            case 0:
+                return new Function("sin(x)") {
+
+                    @Override
+                    public double evaluate(double x) {
+                        return Math.sin(x);
+                    }
+                };
+            case 1:
+                return new Function("exp(x)") {
+
+                    @Override
+                    public double evaluate(double x) {
+                        return Math.exp(x);
+                    }
+                };
+            case 2:
+                return new Function("1/(1+x^2)") {
+
+                    @Override
+                    public double evaluate(double x) {
+                        return 1.0 / (1 + x * x);
+                    }
+                };
+            default:
+                return new Function("0") {
+
+                    @Override
+                    public double evaluate(double x) {
+                        return 0;
+                    }
+                };
+        }
+    }
+}
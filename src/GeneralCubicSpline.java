@@ -0,0 +1,351 @@
+import java.util.Arrays;
+
+/**
+ * Kubische Spline-Interpolation zu beliebigen, aufsteigend geordneten
+ * Stuetzstellen. Im Gegensatz zu CubicSpline werden keine aequidistanten
+ * Stuetzstellen vorausgesetzt. Berechnet werden die zweiten Ableitungen M_i
+ * an den Stuetzstellen aus dem tridiagonalen System
+ * <p/>
+ * h_(i-1) M_(i-1) + 2 (h_(i-1) + h_i) M_i + h_i M_(i+1) = 6 (d_i - d_(i-1))
+ * <p/>
+ * mit den Intervallbreiten h_i = x_(i+1) - x_i und den Steigungen
+ * d_i = (y_(i+1) - y_i) / h_i, ergaenzt um die gewaehlte Randbedingung:
+ * CLAMPED (vorgegebene erste Ableitungen an den Raendern), NATURAL
+ * (M_0 = M_n = 0), NOT_A_KNOT (dritte Ableitung in x_1 und x_(n-1) stetig)
+ * oder PERIODIC (Ableitungen in x_0 und x_n stimmen ueberein, y_n = y_0).
+ * Bei PERIODIC wird y_n nur in der Rechnung durch y_0 ersetzt, die
+ * gespeicherten Stuetzwerte bleiben unveraendert, sodass nach einem Wechsel
+ * der Randbedingung wieder y_n interpoliert wird.
+ * <p/>
+ * Das Intervall einer Stelle wird durch Intervallhalbierung in O(log n)
+ * gefunden, fuer aufsteigende Stellen gibt es eine Stapelauswertung in
+ * O(n + m). Liegt z ausserhalb der Stuetzgrenzen, werden wie bei den anderen
+ * Verfahren die aeussersten Werte y[0] bzw. y[n] zurueckgegeben, im
+ * periodischen Fall wird z in [x_0, x_n) verschoben.
+ */
+public class GeneralCubicSpline implements InterpolationMethod {
+
+    /**
+     * die Randbedingungen
+     */
+    final static int CLAMPED = 0;
+    final static int NATURAL = 1;
+    final static int NOT_A_KNOT = 2;
+    final static int PERIODIC = 3;
+
+    /**
+     * Stuetzstellen und Stuetzwerte
+     */
+    double[] x;
+    double[] y;
+
+    /**
+     * zweite Ableitungen an den Stuetzstellen
+     */
+    double[] m;
+
+    private int boundary = NATURAL;
+
+    /**
+     * vorgegebene erste Ableitungen an den Raendern fuer CLAMPED
+     */
+    private double yprime0, yprimen;
+
+    public GeneralCubicSpline() {
+    }
+
+    /**
+     * Konstruktor
+     *
+     * @param x        Stuetzstellen, streng aufsteigend
+     * @param y        Stuetzwerte
+     * @param boundary Randbedingung
+     */
+    public GeneralCubicSpline(double[] x, double[] y, int boundary) {
+        this.boundary = boundary;
+        init(x, y);
+    }
+
+    /**
+     * {@inheritDoc} Die aequidistanten Stuetzstellen werden erzeugt und wie
+     * beliebige Stuetzstellen behandelt.
+     */
+    @Override
+    public void init(double a, double b, int n, double[] y) {
+        double[] x = new double[n + 1];
+        double h = (b - a) / n;
+        for (int i = 0; i < n; i++) {
+            x[i] = a + i * h;
+        }
+        x[n] = b;
+        init(x, y);
+    }
+
+    /**
+     * Initialisierung mit beliebigen Stuetzstellen. Die Stuetzstellen muessen
+     * streng aufsteigend geordnet sein, x und y gleich lang und nicht leer.
+     *
+     * @param x Stuetzstellen
+     * @param y Stuetzwerte
+     */
+    public void init(double[] x, double[] y) {
+        if (x.length != y.length || x.length == 0)
+            throw new IllegalArgumentException(
+                    "x und y muessen gleich lang und nicht leer sein");
+        for (int i = 1; i < x.length; i++) {
+            if (!(x[i] > x[i - 1]))
+                throw new IllegalArgumentException(
+                        "Stuetzstellen muessen streng aufsteigend sein");
+        }
+        this.x = Arrays.copyOf(x, x.length);
+        this.y = Arrays.copyOf(y, y.length);
+        computeSecondDerivatives();
+    }
+
+    /**
+     * Setzt die Randbedingung CLAMPED, NATURAL, NOT_A_KNOT oder PERIODIC.
+     * Ist der Spline bereits initialisiert, werden die zweiten Ableitungen
+     * neu berechnet.
+     */
+    public void setBoundaryCondition(int boundary) {
+        if (boundary < CLAMPED || boundary > PERIODIC)
+            throw new IllegalArgumentException("Unbekannte Randbedingung "
+                    + boundary);
+        this.boundary = boundary;
+        if (x != null)
+            computeSecondDerivatives();
+    }
+
+    public int getBoundaryCondition() {
+        return boundary;
+    }
+
+    /**
+     * Setzt die Randbedingung CLAMPED mit den ersten Ableitungen yprime0 in
+     * x_0 und yprimen in x_n
+     */
+    public void setBoundaryConditions(double yprime0, double yprimen) {
+        this.yprime0 = yprime0;
+        this.yprimen = yprimen;
+        setBoundaryCondition(CLAMPED);
+    }
+
+    /**
+     * Gibt die zweiten Ableitungen an den Stuetzstellen zurueck
+     */
+    public double[] getSecondDerivatives() {
+        return m;
+    }
+
+    /**
+     * Stellt das Gleichungssystem fuer die zweiten Ableitungen mit der
+     * gewaehlten Randbedingung auf und loest es mit TridiagonalMatrix
+     */
+    private void computeSecondDerivatives() {
+        int n = x.length - 1;
+        m = new double[n + 1];
+        if (n < 2) {
+            /* eine Gerade bzw. ein Punkt */
+            if (n == 1 && boundary == CLAMPED)
+                computeClampedSingleInterval();
+            return;
+        }
+
+        double[] h = new double[n];
+        double[] d = new double[n];
+        for (int i = 0; i < n; i++) {
+            h[i] = x[i + 1] - x[i];
+            d[i] = (value(i + 1) - y[i]) / h[i];
+        }
+
+        switch (boundary) {
+            case CLAMPED: {
+                TridiagonalMatrix a = new TridiagonalMatrix(n + 1);
+                double[] right = new double[n + 1];
+                a.diag[0] = 2 * h[0];
+                a.upper[0] = h[0];
+                right[0] = 6 * (d[0] - yprime0);
+                fillInterior(a, right, h, d, 0);
+                a.lower[n - 1] = h[n - 1];
+                a.diag[n] = 2 * h[n - 1];
+                right[n] = 6 * (yprimen - d[n - 1]);
+                m = a.solveLinearSystem(right);
+                break;
+            }
+            case NATURAL: {
+                TridiagonalMatrix a = new TridiagonalMatrix(n - 1);
+                double[] right = new double[n - 1];
+                fillInterior(a, right, h, d, 1);
+                System.arraycopy(a.solveLinearSystem(right), 0, m, 1, n - 1);
+                break;
+            }
+            case NOT_A_KNOT: {
+                if (n == 2) {
+                    /* ein einziges Polynom durch drei Punkte: eine Parabel */
+                    double c = 2 * (d[1] - d[0]) / (h[0] + h[1]);
+                    m[0] = m[1] = m[2] = c;
+                    break;
+                }
+                /*
+                 * M_0 und M_n werden ueber die Stetigkeit der dritten
+                 * Ableitung durch M_1, M_2 bzw. M_(n-2), M_(n-1) ersetzt
+                 */
+                TridiagonalMatrix a = new TridiagonalMatrix(n - 1);
+                double[] right = new double[n - 1];
+                fillInterior(a, right, h, d, 1);
+                a.diag[0] = (h[0] + h[1]) * (h[0] + 2 * h[1]) / h[1];
+                a.upper[0] = (h[1] * h[1] - h[0] * h[0]) / h[1];
+                a.lower[n - 3] = (h[n - 2] * h[n - 2] - h[n - 1] * h[n - 1])
+                        / h[n - 2];
+                a.diag[n - 2] = (h[n - 2] + h[n - 1]) * (2 * h[n - 2] + h[n - 1])
+                        / h[n - 2];
+                System.arraycopy(a.solveLinearSystem(right), 0, m, 1, n - 1);
+                m[0] = ((h[0] + h[1]) * m[1] - h[0] * m[2]) / h[1];
+                m[n] = ((h[n - 2] + h[n - 1]) * m[n - 1] - h[n - 1] * m[n - 2])
+                        / h[n - 2];
+                break;
+            }
+            case PERIODIC: {
+                /* Unbekannte M_0 bis M_(n-1), M_n = M_0 */
+                TridiagonalMatrix a = new TridiagonalMatrix(n);
+                double[] right = new double[n];
+                a.diag[0] = 2 * (h[n - 1] + h[0]);
+                a.upper[0] = h[0];
+                right[0] = 6 * (d[0] - d[n - 1]);
+                fillInterior(a, right, h, d, 0);
+                double[] solution = a.solveCyclicLinearSystem(right, h[n - 1],
+                        h[n - 1]);
+                System.arraycopy(solution, 0, m, 0, n);
+                m[n] = m[0];
+                break;
+            }
+        }
+    }
+
+    /**
+     * Traegt die Gleichungen der inneren Stuetzstellen 1 bis n-1 in a und
+     * right ein. Die Unbekannte M_i steht in Zeile i - first.
+     */
+    private static void fillInterior(TridiagonalMatrix a, double[] right,
+                                     double[] h, double[] d, int first) {
+        int n = h.length;
+        for (int i = 1; i < n; i++) {
+            int row = i - first;
+            if (row > 0)
+                a.lower[row - 1] = h[i - 1];
+            a.diag[row] = 2 * (h[i - 1] + h[i]);
+            if (row < a.dim - 1)
+                a.upper[row] = h[i];
+            right[row] = 6 * (d[i] - d[i - 1]);
+        }
+    }
+
+    /**
+     * CLAMPED mit nur einem Intervall: das Hermite-Polynom zu y_0, y_1 und den
+     * vorgegebenen Ableitungen
+     */
+    private void computeClampedSingleInterval() {
+        double h = x[1] - x[0];
+        double d = (y[1] - y[0]) / h;
+        m[0] = (6 * d - 4 * yprime0 - 2 * yprimen) / h;
+        m[1] = (4 * yprimen + 2 * yprime0 - 6 * d) / h;
+    }
+
+    /**
+     * {@inheritDoc} Das Intervall wird durch Intervallhalbierung gesucht.
+     */
+    @Override
+    public double evaluate(double z) {
+        int n = x.length - 1;
+        if (n == 0)
+            return y[0];
+        if (boundary == PERIODIC)
+            z = wrap(z);
+        if (z <= x[0])
+            return y[0];
+        if (z >= x[n])
+            return value(n);
+        return evaluate(findInterval(z), z);
+    }
+
+    /**
+     * Wertet den Spline an allen Stellen z aus und schreibt die Ergebnisse
+     * nach out. Sind die Stellen aufsteigend geordnet, wird das Intervall
+     * jeweils vom vorigen aus weitergesucht, insgesamt also in O(n + m).
+     * Ungeordnete Stellen sind erlaubt, dann wird neu gesucht.
+     */
+    public void evaluate(double[] z, double[] out) {
+        int n = x.length - 1;
+        int i = 0;
+        double previous = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < z.length; k++) {
+            double t = z[k];
+            if (n == 0) {
+                out[k] = y[0];
+                continue;
+            }
+            if (boundary == PERIODIC)
+                t = wrap(t);
+            if (t <= x[0]) {
+                out[k] = y[0];
+            } else if (t >= x[n]) {
+                out[k] = value(n);
+            } else {
+                if (t < previous) {
+                    i = findInterval(t);
+                } else {
+                    while (x[i + 1] < t) {
+                        i++;
+                    }
+                }
+                out[k] = evaluate(i, t);
+            }
+            previous = t;
+        }
+    }
+
+    /**
+     * Stuetzwert y_i, im periodischen Fall mit y_0 an Stelle von y_n
+     */
+    private double value(int i) {
+        return boundary == PERIODIC && i == x.length - 1 ? y[0] : y[i];
+    }
+
+    /**
+     * Verschiebt z um Vielfache der Periode x_n - x_0 nach [x_0, x_n)
+     */
+    private double wrap(double z) {
+        double period = x[x.length - 1] - x[0];
+        double t = (z - x[0]) % period;
+        if (t < 0)
+            t += period;
+        return x[0] + t;
+    }
+
+    /**
+     * Sucht den Index i mit x_i < z <= x_(i+1) fuer x_0 < z < x_n
+     */
+    private int findInterval(double z) {
+        int low = 0, high = x.length - 1;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (x[mid] < z)
+                low = mid;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Wertet das kubische Polynom des Intervalls [x_i, x_(i+1)] in z aus
+     */
+    private double evaluate(int i, double z) {
+        double h = x[i + 1] - x[i];
+        double left = x[i + 1] - z;
+        double right = z - x[i];
+        return (m[i] * left * left * left + m[i + 1] * right * right * right)
+                / (6 * h) + (y[i] / h - m[i] * h / 6) * left
+                + (value(i + 1) / h - m[i + 1] * h / 6) * right;
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Interpolation von Werten auf einem regelmaessigen zweidimensionalen Gitter,
+ * z.B. einer Kalibriertabelle. Die Auswertung ist das Tensorprodukt eines
+ * Interpolationskerns mit Gewichtstabelle in x- und y-Richtung: mit dem
+ * LinearKernel ergibt sich bilineare, mit dem CatmullRomKernel bikubische
+ * Interpolation. Ausserhalb des Gitters wird der Randwert fortgesetzt.
+ * <p/>
+ * Die Gitterzelle einer Stelle wird direkt aus ihren Koordinaten berechnet.
+ * Die Stapelauswertungen legen je Aufruf nur einmal Hilfsfelder an, die
+ * Auswertung einzelner Stellen mit evaluate(x, y) verwendet Hilfsfelder des
+ * Objekts und ist daher nicht threadsicher.
+ */
+public class GridInterpolation2D {
+
+    private final InterpolationKernel kernel;
+    private final double support;
+    private final int taps;
+
+    /**
+     * Anzahl der Gitterpunkte je Richtung
+     */
+    private final int columns, rows;
+
+    /**
+     * untere Grenzen und Gitterabstaende
+     */
+    private final double xMin, yMin, hx, hy;
+
+    /**
+     * Werte an den Gitterpunkten, zeilenweise: der Wert am Punkt
+     * (xMin + i*hx, yMin + j*hy) steht an Index j * columns + i
+     */
+    private final double[] values;
+
+    /**
+     * Hilfsfelder fuer evaluate(x, y)
+     */
+    private final int[] indexX, indexY;
+    private final double[] weightX, weightY;
+
+    /**
+     * @param kernel  Kern mit Gewichtstabelle
+     * @param xMin    kleinste Stuetzstelle in x-Richtung
+     * @param xMax    groesste Stuetzstelle in x-Richtung
+     * @param columns Anzahl der Gitterpunkte in x-Richtung
+     * @param yMin    kleinste Stuetzstelle in y-Richtung
+     * @param yMax    groesste Stuetzstelle in y-Richtung
+     * @param rows    Anzahl der Gitterpunkte in y-Richtung
+     * @param values  columns * rows Stuetzwerte, zeilenweise abgelegt. Das Feld
+     *                wird nicht kopiert.
+     */
+    public GridInterpolation2D(InterpolationKernel kernel, double xMin,
+                               double xMax, int columns, double yMin,
+                               double yMax, int rows, double[] values) {
+        if (!kernel.hasWeightTable())
+            throw new IllegalArgumentException("Kern " + kernel.getName()
+                    + " hat keine Gewichtstabelle");
+        if (columns < 1 || rows < 1 || values.length < columns * rows)
+            throw new IllegalArgumentException("Ungueltige Gittergroesse");
+        this.kernel = kernel;
+        this.support = kernel.getSupport();
+        this.taps = Math.max(1, (int) Math.ceil(2 * support));
+        this.columns = columns;
+        this.rows = rows;
+        this.xMin = xMin;
+        this.yMin = yMin;
+        this.hx = columns > 1 ? (xMax - xMin) / (columns - 1) : 1;
+        this.hy = rows > 1 ? (yMax - yMin) / (rows - 1) : 1;
+        this.values = values;
+        indexX = new int[taps];
+        indexY = new int[taps];
+        weightX = new double[taps];
+        weightY = new double[taps];
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Wertet die Interpolation an der Stelle (x, y) aus
+     */
+    public double evaluate(double x, double y) {
+        weights((x - xMin) / hx, columns, indexX, weightX, 0);
+        weights((y - yMin) / hy, rows, indexY, weightY, 0);
+        return sum(indexX, weightX, 0, indexY, weightY, 0);
+    }
+
+    /**
+     * Wertet die Interpolation an den Stellen (xs[k], ys[k]) aus und schreibt
+     * die Ergebnisse nach out[k]
+     */
+    public void evaluate(double[] xs, double[] ys, double[] out) {
+        int[] ix = new int[taps], iy = new int[taps];
+        double[] wx = new double[taps], wy = new double[taps];
+        for (int k = 0; k < xs.length; k++) {
+            weights((xs[k] - xMin) / hx, columns, ix, wx, 0);
+            weights((ys[k] - yMin) / hy, rows, iy, wy, 0);
+            out[k] = sum(ix, wx, 0, iy, wy, 0);
+        }
+    }
+
+    /**
+     * Wertet die Interpolation auf dem Gitter xs x ys aus: der Wert an der
+     * Stelle (xs[i], ys[j]) wird nach out[j * xs.length + i] geschrieben. Die
+     * Gewichte werden dabei nur einmal je Spalte und Zeile berechnet.
+     */
+    public void evaluateGrid(double[] xs, double[] ys, double[] out) {
+        int[] ix = new int[xs.length * taps], iy = new int[taps];
+        double[] wx = new double[xs.length * taps], wy = new double[taps];
+        for (int i = 0; i < xs.length; i++) {
+            weights((xs[i] - xMin) / hx, columns, ix, wx, i * taps);
+        }
+        for (int j = 0; j < ys.length; j++) {
+            weights((ys[j] - yMin) / hy, rows, iy, wy, 0);
+            int offset = j * xs.length;
+            for (int i = 0; i < xs.length; i++) {
+                out[offset + i] = sum(ix, wx, i * taps, iy, wy, 0);
+            }
+        }
+    }
+
+    /**
+     * Berechnet zur Stelle u (in Gitterabstaenden) die beteiligten
+     * Gitterindizes und ihre auf Summe 1 normierten Gewichte wie in
+     * ResampleWeights
+     */
+    private void weights(double u, int n, int[] index, double[] weight,
+                         int offset) {
+        if (!(u > 0))
+            u = 0;
+        if (u > n - 1)
+            u = n - 1;
+        int start = (int) Math.floor(u - support) + 1;
+        double total = 0;
+        for (int k = 0; k < taps; k++) {
+            int j = start + k;
+            double w = kernel.weight(j - u);
+            if (j < 0)
+                j = 0;
+            if (j > n - 1)
+                j = n - 1;
+            index[offset + k] = j;
+            weight[offset + k] = w;
+            total += w;
+        }
+        if (total != 0 && total != 1) {
+            for (int k = 0; k < taps; k++) {
+                weight[offset + k] /= total;
+            }
+        }
+    }
+
+    private double sum(int[] ix, double[] wx, int ox, int[] iy, double[] wy,
+                       int oy) {
+        double result = 0;
+        for (int l = 0; l < taps; l++) {
+            double w = wy[oy + l];
+            if (w == 0)
+                continue;
+            int row = iy[oy + l] * columns;
+            double line = 0;
+            for (int k = 0; k < taps; k++) {
+                line += wx[ox + k] * values[row + ix[ox + k]];
+            }
+            result += w * line;
+        }
+        return result;
+    }
+}
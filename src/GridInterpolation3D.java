@@ -0,0 +1,224 @@
+/**
+ * Interpolation von Werten mit mehreren Kanaelen auf einem regelmaessigen
+ * dreidimensionalen Gitter, z.B. einer 3D-Farbtabelle. Es stehen trilineare
+ * Interpolation (8 Gitterpunkte je Auswertung) und tetraedrische
+ * Interpolation (4 Gitterpunkte) zur Verfuegung. Bei der tetraedrischen
+ * Interpolation wird jede Gitterzelle entlang ihrer Hauptdiagonalen in sechs
+ * Tetraeder zerlegt, Grauwerte auf der Diagonalen werden also nur aus
+ * Diagonalpunkten gebildet. Ausserhalb des Gitters wird der Randwert
+ * fortgesetzt.
+ * <p/>
+ * Die Werte liegen verschachtelt vor, x laeuft am schnellsten: Kanal c am
+ * Gitterpunkt (i, j, k) steht an Index ((k * ny + j) * nx + i) * channels + c.
+ * Das entspricht der Reihenfolge in .cube-Dateien mit x = Rot. Die Auswertung
+ * legt keine Objekte an und ist threadsicher.
+ */
+public class GridInterpolation3D {
+
+    /**
+     * die Interpolations-Modi
+     */
+    final static int TRILINEAR = 0;
+    final static int TETRAHEDRAL = 1;
+
+    private final int nx, ny, nz, channels;
+    private final double[] min = new double[3];
+    private final double[] scale = new double[3];
+    private final double[] values;
+    private int mode = TETRAHEDRAL;
+
+    /**
+     * Gitter ueber dem Einheitswuerfel [0,1]^3
+     */
+    public GridInterpolation3D(int nx, int ny, int nz, int channels,
+                               double[] values) {
+        this(new double[]{0, 0, 0}, new double[]{1, 1, 1}, nx, ny, nz,
+                channels, values);
+    }
+
+    /**
+     * @param min      kleinste Stuetzstellen je Richtung
+     * @param max      groesste Stuetzstellen je Richtung
+     * @param nx       Anzahl der Gitterpunkte in x-Richtung, mindestens 2
+     * @param ny       Anzahl der Gitterpunkte in y-Richtung, mindestens 2
+     * @param nz       Anzahl der Gitterpunkte in z-Richtung, mindestens 2
+     * @param channels Anzahl der Werte je Gitterpunkt
+     * @param values   Stuetzwerte wie oben beschrieben. Das Feld wird nicht
+     *                 kopiert.
+     */
+    public GridInterpolation3D(double[] min, double[] max, int nx, int ny,
+                               int nz, int channels, double[] values) {
+        if (nx < 2 || ny < 2 || nz < 2 || channels < 1
+                || values.length < nx * ny * nz * channels)
+            throw new IllegalArgumentException("Ungueltige Gittergroesse");
+        this.nx = nx;
+        this.ny = ny;
+        this.nz = nz;
+        this.channels = channels;
+        this.values = values;
+        int[] n = {nx, ny, nz};
+        for (int d = 0; d < 3; d++) {
+            this.min[d] = min[d];
+            this.scale[d] = (n[d] - 1) / (max[d] - min[d]);
+        }
+    }
+
+    /**
+     * Setzt den Interpolations-Modus, TRILINEAR oder TETRAHEDRAL (Standard)
+     */
+    public void setMode(int mode) {
+        if (mode != TRILINEAR && mode != TETRAHEDRAL)
+            throw new IllegalArgumentException("Unbekannter Modus " + mode);
+        this.mode = mode;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Anzahl der Gitterpunkte in Richtung d (0 = x, 1 = y, 2 = z)
+     */
+    public int getSize(int d) {
+        return d == 0 ? nx : d == 1 ? ny : nz;
+    }
+
+    /**
+     * Wertet die Interpolation an der Stelle (x, y, z) aus und schreibt die
+     * channels Ergebnisse ab out[offset]
+     */
+    public void evaluate(double x, double y, double z, double[] out,
+                         int offset) {
+        double u = (x - min[0]) * scale[0];
+        double v = (y - min[1]) * scale[1];
+        double w = (z - min[2]) * scale[2];
+        if (!(u > 0))
+            u = 0;
+        if (u > nx - 1)
+            u = nx - 1;
+        if (!(v > 0))
+            v = 0;
+        if (v > ny - 1)
+            v = ny - 1;
+        if (!(w > 0))
+            w = 0;
+        if (w > nz - 1)
+            w = nz - 1;
+
+        /* die Zelle, am oberen Rand die letzte */
+        int i = Math.min((int) u, nx - 2);
+        int j = Math.min((int) v, ny - 2);
+        int k = Math.min((int) w, nz - 2);
+        int base = ((k * ny + j) * nx + i) * channels;
+        interpolate(base, u - i, v - j, w - k, out, offset);
+    }
+
+    /**
+     * Interpoliert in der Zelle mit dem Gitterpunkt (0,0,0) an Index base an
+     * der Stelle (fx, fy, fz) aus [0,1]^3 relativ zur Zelle
+     */
+    void interpolate(int base, double fx, double fy, double fz, double[] out,
+                     int offset) {
+        int dx = channels;
+        int dy = nx * channels;
+        int dz = nx * ny * channels;
+
+        if (mode == TRILINEAR) {
+            for (int c = 0; c < channels; c++) {
+                int p = base + c;
+                double c00 = values[p] + fx * (values[p + dx] - values[p]);
+                double c10 = values[p + dy] + fx
+                        * (values[p + dy + dx] - values[p + dy]);
+                double c01 = values[p + dz] + fx
+                        * (values[p + dz + dx] - values[p + dz]);
+                double c11 = values[p + dz + dy] + fx
+                        * (values[p + dz + dy + dx] - values[p + dz + dy]);
+                double c0 = c00 + fy * (c10 - c00);
+                double c1 = c01 + fy * (c11 - c01);
+                out[offset + c] = c0 + fz * (c1 - c0);
+            }
+            return;
+        }
+
+        /*
+         * tetraedrisch: vom Punkt (0,0,0) der Zelle aus entlang der Kanten in
+         * der Reihenfolge der groessten Anteile zum Punkt (1,1,1)
+         */
+        double f1, f2, f3;
+        int s1, s2, s3;
+        if (fx >= fy) {
+            if (fy >= fz) {
+                f1 = fx;
+                f2 = fy;
+                f3 = fz;
+                s1 = dx;
+                s2 = dy;
+                s3 = dz;
+            } else if (fx >= fz) {
+                f1 = fx;
+                f2 = fz;
+                f3 = fy;
+                s1 = dx;
+                s2 = dz;
+                s3 = dy;
+            } else {
+                f1 = fz;
+                f2 = fx;
+                f3 = fy;
+                s1 = dz;
+                s2 = dx;
+                s3 = dy;
+            }
+        } else {
+            if (fx >= fz) {
+                f1 = fy;
+                f2 = fx;
+                f3 = fz;
+                s1 = dy;
+                s2 = dx;
+                s3 = dz;
+            } else if (fy >= fz) {
+                f1 = fy;
+                f2 = fz;
+                f3 = fx;
+                s1 = dy;
+                s2 = dz;
+                s3 = dx;
+            } else {
+                f1 = fz;
+                f2 = fy;
+                f3 = fx;
+                s1 = dz;
+                s2 = dy;
+                s3 = dx;
+            }
+        }
+        int p1 = base + s1;
+        int p2 = p1 + s2;
+        int p3 = p2 + s3;
+        for (int c = 0; c < channels; c++) {
+            double c0 = values[base + c];
+            double c1 = values[p1 + c];
+            double c2 = values[p2 + c];
+            double c3 = values[p3 + c];
+            out[offset + c] = c0 + f1 * (c1 - c0) + f2 * (c2 - c1) + f3
+                    * (c3 - c2);
+        }
+    }
+
+    /**
+     * Wertet die Interpolation an count Stellen aus. Die Koordinaten liegen
+     * verschachtelt in points (x, y, z je Stelle), die Ergebnisse werden mit
+     * channels Werten je Stelle nach out geschrieben.
+     */
+    public void evaluate(double[] points, int count, double[] out) {
+        for (int p = 0; p < count; p++) {
+            evaluate(points[3 * p], points[3 * p + 1], points[3 * p + 2], out,
+                    p * channels);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bildpyramide zu einem Bild: Stufe 0 ist das Bild selbst, jede weitere Stufe
+ * hat die halbe Breite und Hoehe der vorigen (aufgerundet). Die Stufen werden
+ * erst bei Bedarf aus der naechstgroesseren berechnet und in einem nach
+ * Speicherbedarf begrenzten Zwischenspeicher gehalten, der bei Ueberlauf die
+ * am laengsten nicht verwendete Stufe verwirft.
+ * <p/>
+ * Eine beliebige Zielgroesse wird aus der kleinsten Stufe skaliert, die in
+ * beiden Richtungen noch mindestens so gross ist. Beim Verkleinern wird damit
+ * hoechstens um den Faktor 2 umgetastet, sodass mehrere Vorschaubilder
+ * verschiedener Groesse zusammen kaum mehr kosten als das groesste, und auch
+ * Kerne ohne Tiefpass keine starken Alias-Effekte erzeugen.
+ */
+public class ImagePyramid {
+
+    /**
+     * Kern zum Halbieren einer Stufe. Beim Verkleinern wird er auf die
+     * doppelte Breite gestreckt (siehe ResampleWeights) und gewichtet je
+     * Richtung 4 Pixel mit 1/8, 3/8, 3/8, 1/8.
+     */
+    static final String REDUCE_KERNEL = "linear";
+
+    private final BufferedImage source;
+    private final boolean linearLight;
+    private final boolean periodic;
+    private final int levels;
+
+    /**
+     * zwischengespeicherte Stufen ab 1 in Reihenfolge der letzten Verwendung
+     */
+    private final LinkedHashMap<Integer, BufferedImage> cache = new LinkedHashMap<Integer, BufferedImage>(
+            16, 0.75f, true);
+    private long cachedBytes;
+    private long maxBytes;
+
+    /**
+     * Erzeugt die Pyramide zum aktuellen Bild von picture. Die Einstellungen
+     * linearLight und periodic werden fuer alle Stufen uebernommen. Der
+     * Zwischenspeicher ist so gross wie das Bild selbst, das reicht fuer alle
+     * Stufen (zusammen etwa ein Drittel davon).
+     */
+    public ImagePyramid(Picture picture) {
+        if (picture.isNull())
+            throw new IllegalArgumentException("Leeres Bild");
+        source = picture.getImage();
+        linearLight = picture.isLinearLight();
+        periodic = picture.isPeriodic();
+        int count = 1;
+        for (int w = source.getWidth(), h = source.getHeight(); w > 1
+                || h > 1; count++) {
+            w = (w + 1) / 2;
+            h = (h + 1) / 2;
+        }
+        levels = count;
+        maxBytes = bytes(source);
+    }
+
+    /**
+     * Begrenzt den Speicher fuer die zwischengespeicherten Stufen (ohne
+     * Stufe 0) auf maxBytes. Mit 0 wird nichts zwischengespeichert.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("maxBytes muss >= 0 sein");
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Gibt den aktuell belegten Speicher der zwischengespeicherten Stufen
+     * zurueck
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Anzahl der Stufen bis einschliesslich 1x1
+     */
+    public int getLevelCount() {
+        return levels;
+    }
+
+    public int getLevelWidth(int level) {
+        checkLevel(level);
+        return (source.getWidth() + (1 << level) - 1) >> level;
+    }
+
+    public int getLevelHeight(int level) {
+        checkLevel(level);
+        return (source.getHeight() + (1 << level) - 1) >> level;
+    }
+
+    /**
+     * Gibt die Stufe level zurueck und berechnet sie bei Bedarf, ausgehend von
+     * der groessten vorhandenen kleineren Stufe. Das Bild darf nicht
+     * veraendert werden.
+     */
+    public synchronized BufferedImage getLevel(int level) {
+        checkLevel(level);
+        if (level == 0)
+            return source;
+        BufferedImage img = cache.get(level);
+        if (img != null)
+            return img;
+
+        int start = level - 1;
+        BufferedImage from = null;
+        for (; start > 0; start--) {
+            from = cache.get(start);
+            if (from != null)
+                break;
+        }
+        if (from == null)
+            from = source;
+        for (int k = start + 1; k <= level; k++) {
+            Picture half = newPicture(from);
+            half.scale(getLevelWidth(k), getLevelHeight(k), REDUCE_KERNEL);
+            from = half.getImage();
+            put(k, from);
+        }
+        return from;
+    }
+
+    /**
+     * Gibt die kleinste Stufe zurueck, die mindestens width x height gross ist
+     */
+    public int selectLevel(int width, int height) {
+        int level = 0;
+        while (level + 1 < levels && getLevelWidth(level + 1) >= width
+                && getLevelHeight(level + 1) >= height) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Erzeugt ein neues Bild der Groesse width x height, skaliert aus der
+     * passenden Stufe mit dem Kern kernel
+     */
+    public Picture scale(int width, int height, InterpolationKernel kernel) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Ungueltige Groesse " + width
+                    + "x" + height);
+        BufferedImage level = getLevel(selectLevel(width, height));
+        Picture result = newPicture(level);
+        if (level.getWidth() != width || level.getHeight() != height)
+            result.scale(width, height, kernel);
+        return result;
+    }
+
+    /**
+     * Wie scale(width, height, kernel) mit dem Kern namens kernelName aus der
+     * KernelRegistry
+     */
+    public Picture scale(int width, int height, String kernelName) {
+        InterpolationKernel kernel = KernelRegistry.get(kernelName);
+        if (kernel == null)
+            throw new IllegalArgumentException("Unbekannter Kern "
+                    + kernelName);
+        return scale(width, height, kernel);
+    }
+
+    private Picture newPicture(BufferedImage img) {
+        Picture picture = new Picture(img);
+        picture.setLinearLight(linearLight);
+        picture.setPeriodic(periodic);
+        return picture;
+    }
+
+    private void put(int level, BufferedImage img) {
+        BufferedImage old = cache.put(level, img);
+        if (old != null)
+            cachedBytes -= bytes(old);
+        cachedBytes += bytes(img);
+        evict();
+    }
+
+    /**
+     * Verwirft die am laengsten nicht verwendeten Stufen, bis die Grenze
+     * eingehalten ist
+     */
+    private void evict() {
+        Iterator<Map.Entry<Integer, BufferedImage>> it = cache.entrySet()
+                .iterator();
+        while (cachedBytes > maxBytes && it.hasNext()) {
+            cachedBytes -= bytes(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    private void checkLevel(int level) {
+        if (level < 0 || level >= levels)
+            throw new IllegalArgumentException("Stufe " + level
+                    + " existiert nicht");
+    }
+
+    /**
+     * Speicherbedarf der Pixel eines Bildes
+     */
+    private static long bytes(BufferedImage img) {
+        DataBuffer buffer = img.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks()
+                * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+}
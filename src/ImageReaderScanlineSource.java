@@ -0,0 +1,85 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Liest ein Bild beliebigen Formats ueber einen ImageReader in Streifen von
+ * BAND Zeilen. Es wird immer nur ein Streifen im Speicher gehalten.
+ */
+public class ImageReaderScanlineSource implements ScanlineSource {
+
+    /**
+     * Anzahl an Zeilen, die auf einmal gelesen werden
+     */
+    static final int BAND = 64;
+
+    private final ImageInputStream stream;
+    private final ImageReader reader;
+    private final int width, height;
+    private final boolean alpha;
+
+    /**
+     * der aktuelle Streifen
+     */
+    private BufferedImage band;
+
+    /**
+     * erste Zeile des aktuellen Streifens, Anzahl seiner Zeilen und die
+     * naechste zu liefernde Zeile
+     */
+    private int bandStart, bandRows, next;
+
+    public ImageReaderScanlineSource(InputStream in) throws IOException {
+        stream = ImageIO.createImageInputStream(in);
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext())
+            throw new IOException("Unbekanntes Bildformat");
+        reader = readers.next();
+        reader.setInput(stream, true, true);
+        width = reader.getWidth(0);
+        height = reader.getHeight(0);
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        alpha = types.hasNext() && types.next().getColorModel().hasAlpha();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean hasAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public void readRow(int[] row) throws IOException {
+        if (band == null || next >= bandStart + bandRows) {
+            bandStart = next;
+            bandRows = Math.min(BAND, height - bandStart);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, bandStart, width, bandRows));
+            band = reader.read(0, param);
+        }
+        RasterAccess.readRow(band, next - bandStart, row);
+        next++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        stream.close();
+    }
+}
@@ -35,6 +35,12 @@ class ViewComponent extends JComponent {
      */
     private Picture oldpic;
 
+    /**
+     * Das geladene Bild. Skaliert wird immer aus dessen Bildpyramide, damit
+     * sich beim wiederholten Zoomen die Fehler nicht aufsummieren.
+     */
+    private Picture source;
+
     public ViewComponent() {
         super();
         // File file = new File("bilder/test.gif");
@@ -51,6 +57,7 @@ class ViewComponent extends JComponent {
             return;
         try {
             pic = new Picture(file.getAbsolutePath());
+            source = pic.isNull() ? null : new Picture(pic.getImage());
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -72,26 +79,29 @@ class ViewComponent extends JComponent {
     }
 
     /**
-     * Veraendert die Maße des Bildes zu neWidth/newHight mit der
-     * Interpolationsmethode mode
+     * Veraendert die Maße des Bildes zu neWidth/newHight mit dem
+     * Interpolationskern namens mode
      */
-    public void scaleImage(int newWidth, int newHeight, int mode) {
+    public void scaleImage(int newWidth, int newHeight, String mode) {
         if (newHeight < 1 || newWidth < 1) {
             System.out.println("Bild wird zu klein");
             return;
         }
         oldpic = new Picture(pic.getImage());
         if (pic != null && !pic.isNull()) {
-            pic.scale(newWidth, newHeight, mode);
+            if (source != null && KernelRegistry.get(mode) != null)
+                pic = source.getPyramid().scale(newWidth, newHeight, mode);
+            else
+                pic.scale(newWidth, newHeight, mode);
             repaint();
         }
     }
 
     /**
-     * Veraendert die Grösse des Bildes um einen Factor scale mit der
-     * Interpolationsmethode mode
+     * Veraendert die Grösse des Bildes um einen Factor scale mit dem
+     * Interpolationskern namens mode
      */
-    public void scaleImage(double scale, int mode) {
+    public void scaleImage(double scale, String mode) {
         if (pic != null && !pic.isNull()) {
             int newWidth = (int) Math.round(pic.getWidth() * scale);
             int newHeight = (int) Math.round(pic.getHeight() * scale);
@@ -136,7 +146,7 @@ public class ImageViewer extends JFrame implements ActionListener,
     /**
      * Combobox fuer die Interpolationsmethoden
      */
-    String[] modeStrings = {"Nearest", "Linear", "Poly", "Cubic"};
+    String[] modeStrings = KernelRegistry.getNames();
     JComboBox interpolationmodeBox = new JComboBox(modeStrings);
     /**
      * Textfeld fuer die Eingabe des Skalierungsfaktors
@@ -231,7 +241,7 @@ public class ImageViewer extends JFrame implements ActionListener,
 			/* Das Bild skalieren */
         } else if (source == (JComponent) scaleButton
                 || source == (JComponent) scaleFactorField) {
-            int mode = interpolationmodeBox.getSelectedIndex();
+            String mode = (String) interpolationmodeBox.getSelectedItem();
             try {
                 double scalefactor = Double.parseDouble(scaleFactorField
                         .getText());
@@ -251,7 +261,7 @@ public class ImageViewer extends JFrame implements ActionListener,
      * Mit dem Mausrad laesst sich das Bild um einen 10% Faktor skalieren
      */
     public void mouseWheelMoved(MouseWheelEvent e) {
-        int mode = interpolationmodeBox.getSelectedIndex();
+        String mode = (String) interpolationmodeBox.getSelectedItem();
 
         int notches = e.getWheelRotation();
         if (notches < 0) {
@@ -0,0 +1,49 @@
+/**
+ * Beschreibt einen Interpolationskern, der ueber die {@link KernelRegistry}
+ * gefunden werden kann. Ein Kern erzeugt Instanzen seines
+ * Interpolationsverfahrens und gibt Auskunft ueber seine Eigenschaften, damit
+ * z.B. {@link Picture#scale(int, int, String)} den schnellsten passenden
+ * Berechnungsweg waehlen kann.
+ * <p/>
+ * Neue Kerne werden ueber den ServiceLoader-Mechanismus eingebunden, indem
+ * ihr Klassenname in META-INF/services/InterpolationKernel eingetragen wird.
+ */
+public interface InterpolationKernel {
+
+    /**
+     * Eindeutiger Name des Kerns, z.B. "linear" oder "lanczos3"
+     */
+    public String getName();
+
+    /**
+     * Radius des Traegers gemessen in Stuetzstellenabstaenden. Ein Wert von 2
+     * bedeutet, dass in jede Auswertung die 4 naechsten Stuetzwerte eingehen.
+     * Globale Verfahren geben Double.POSITIVE_INFINITY zurueck.
+     */
+    public double getSupport();
+
+    /**
+     * Gibt an, ob der Kern in x- und y-Richtung getrennt angewendet werden
+     * darf
+     */
+    public boolean isSeparable();
+
+    /**
+     * Gibt an, ob sich der Kern als Gewichtstabelle ueber einen endlichen
+     * Traeger darstellen laesst. Nur dann darf {@link #weight(double)}
+     * aufgerufen werden.
+     */
+    public boolean hasWeightTable();
+
+    /**
+     * Wert des Kerns im Abstand t (in Stuetzstellenabstaenden) zur
+     * Auswertungsstelle
+     */
+    public double weight(double t);
+
+    /**
+     * Erzeugt ein neues, noch nicht initialisiertes Interpolationsverfahren
+     * dieses Kerns
+     */
+    public InterpolationMethod createInterpolation();
+}
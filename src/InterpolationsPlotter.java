@@ -2,19 +2,10 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
-
-
-abstract class Function {
-    public String name;
-
-    public Function(String name) {
-        this.name = name;
-    }
-
-    public abstract double evaluate(double x);
-}
+import java.awt.geom.Path2D;
 
 
 /**
@@ -29,12 +20,14 @@ class PlotComponent extends JComponent {
     private static final long serialVersionUID = 1L;
     /* Top, bottom, left and right margin of the coordinate system in the plot. */
     final int PADDING = 20;
-    final int numOfPoints = 1000;
-    double[] xData = new double[numOfPoints];
-    double[] fData = new double[numOfPoints];
-    double[] pData = new double[numOfPoints];
+    /* Anzahl der gleichmaessigen Abtastintervalle vor der Verfeinerung */
+    final int INITIAL_INTERVALS = 512;
+    /* hoechstens so viele Abtastpunkte je Kurve */
+    final int MAX_POINTS = 200000;
+    /* maximale Abweichung von der Sehne relativ zum Wertebereich */
+    final double TOLERANCE = 1e-3;
     Function f;
-    InterpolationMethod method;
+    InterpolationKernel kernel;
     /* Sampling Points */
     double a;
     double b;
@@ -44,6 +37,25 @@ class PlotComponent extends JComponent {
     double maxX = Double.MIN_VALUE;
     double maxY = Double.MIN_VALUE;
 
+    /* die zuletzt berechneten Kurven, null solange noch keine fertig ist */
+    private Curve curve;
+
+    /* die laufende Berechnung */
+    private SwingWorker<Curve, Void> worker;
+
+    /**
+     * Abgetastete Kurven von f und dem Interpolanten in Datenkoordinaten. Sie
+     * haengen nur von f, dem Verfahren, a, b und n ab, nicht von der Groesse
+     * der Komponente.
+     */
+    static class Curve {
+        Path2D.Double function = new Path2D.Double();
+        Path2D.Double interpolant = new Path2D.Double();
+        double[] nodesX, nodesY;
+        double minX, maxX, minY, maxY;
+        int points;
+    }
+
     public PlotComponent() {
         super();
         setFunction(0);
@@ -54,79 +66,169 @@ class PlotComponent extends JComponent {
     }
 
     public void setFunction(int f_index) {
-        switch (f_index) {
-            case 0:
-                f = new Function("sin(x)") {
+        f = Function.get(f_index);
+        recompute();
+    }
 
-                    @Override
-                    public double evaluate(double x) {
-                        return Math.sin(x);
-                    }
-                };
-                break;
-            case 1:
-                f = new Function("exp(x)") {
-
-                    @Override
-                    public double evaluate(double x) {
-                        return Math.exp(x);
-                    }
-                };
-                break;
-            case 2:
-                f = new Function("1/(1+x^2)") {
-
-                    @Override
-                    public double evaluate(double x) {
-                        return 1.0 / (1 + x * x);
-                    }
-                };
-                break;
-            default:
-                f = new Function("0") {
-
-                    @Override
-                    public double evaluate(double x) {
-                        return 0;
-                    }
-                };
-                break;
+    public void setInterpolationMethod(int methodindex) {
+        InterpolationKernel kernel = KernelRegistry.get(methodindex);
+        if (kernel != null) {
+            this.kernel = kernel;
         }
-        repaint();
+        recompute();
     }
 
-    public void setInterpolationMethod(int methodindex) {
-        switch (methodindex) {
-            case 0:
-                method = new NearestNeighbour();
-                break;
-            case 1:
-                method = new LinearInterpolation();
-                break;
-            case 2:
-                method = new NewtonPolynom();
-                break;
-            case 3:
-                method = new CubicSpline();
-                break;
-            default:
-                break;
+    public void setInterpolationMethod(String kernelName) {
+        InterpolationKernel kernel = KernelRegistry.get(kernelName);
+        if (kernel != null) {
+            this.kernel = kernel;
         }
-        repaint();
+        recompute();
     }
 
     public void setSamplingPoints(int a, int b, int n) {
         this.a = a;
         this.b = b;
         this.n = n;
-        repaint();
+        recompute();
+    }
+
+    /**
+     * Bricht eine laufende Berechnung ab und startet die Abtastung der Kurven
+     * im Hintergrund neu. Bis sie fertig ist, werden die alten Kurven
+     * gezeichnet.
+     */
+    private void recompute() {
+        if (f == null || kernel == null || n < 1 || !(b > a))
+            return;
+        if (worker != null)
+            worker.cancel(true);
+
+        final Function f = this.f;
+        final InterpolationMethod method = kernel.createInterpolation();
+        final double a = this.a, b = this.b;
+        final int n = this.n;
+        worker = new SwingWorker<Curve, Void>() {
+            @Override
+            protected Curve doInBackground() {
+                return sample(f, method, a, b, n, this);
+            }
+
+            @Override
+            protected void done() {
+                if (worker != this || isCancelled())
+                    return;
+                try {
+                    curve = get();
+                } catch (Exception e) {
+                    /* abgebrochen oder fehlgeschlagen: alte Kurven behalten */
+                    return;
+                }
+                repaint();
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Tastet f und den Interpolanten auf [a, b] adaptiv ab. Ausgehend von
+     * INITIAL_INTERVALS gleich breiten Intervallen wird jedes Intervall
+     * halbiert, solange eine der beiden Kurven in der Mitte um mehr als
+     * TOLERANCE mal den Wertebereich von der Sehne abweicht, also dort, wo
+     * die Kruemmung oder der Fehler gross ist. Gibt null zurueck, wenn task
+     * abgebrochen wurde.
+     */
+    Curve sample(Function f, InterpolationMethod method, double a, double b,
+                 int n, SwingWorker<?, ?> task) {
+        Curve result = new Curve();
+        result.nodesX = new double[n + 1];
+        result.nodesY = new double[n + 1];
+        for (int i = 0; i < n + 1; i++) {
+            result.nodesX[i] = a + i * 1.0 * (b - a) / n;
+            result.nodesY[i] = f.evaluate(result.nodesX[i]);
+        }
+        method.init(a, b, n, result.nodesY);
+
+        /* gleichmaessige Startabtastung, bestimmt auch den Wertebereich */
+        double[] xs = new double[INITIAL_INTERVALS + 1];
+        double[] fs = new double[INITIAL_INTERVALS + 1];
+        double[] ps = new double[INITIAL_INTERVALS + 1];
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i <= INITIAL_INTERVALS; i++) {
+            if (task.isCancelled())
+                return null;
+            xs[i] = a + i * (b - a) / INITIAL_INTERVALS;
+            fs[i] = f.evaluate(xs[i]);
+            ps[i] = method.evaluate(xs[i]);
+            if (fs[i] < minY)
+                minY = fs[i];
+            if (fs[i] > maxY)
+                maxY = fs[i];
+        }
+        if (!(maxY > minY)) {
+            minY -= 1;
+            maxY += 1;
+        }
+        double tolerance = TOLERANCE * (maxY - minY);
+        double minWidth = (b - a) / INITIAL_INTERVALS / 4096;
+
+        result.function.moveTo(xs[0], fs[0]);
+        result.interpolant.moveTo(xs[0], ps[0]);
+        result.points = 1;
+
+        /*
+         * Intervalle von links nach rechts abarbeiten: auf dem Stapel liegen
+         * die noch zu pruefenden rechten Teilintervalle, jeweils x, f und p
+         * am rechten Ende
+         */
+        double[] stack = new double[3 * 64];
+        for (int i = 0; i < INITIAL_INTERVALS; i++) {
+            double x0 = xs[i], f0 = fs[i], p0 = ps[i];
+            int top = 0;
+            stack[top++] = xs[i + 1];
+            stack[top++] = fs[i + 1];
+            stack[top++] = ps[i + 1];
+            while (top > 0) {
+                if (task.isCancelled())
+                    return null;
+                double x1 = stack[top - 3], f1 = stack[top - 2], p1 = stack[top - 1];
+                double xm = (x0 + x1) / 2;
+                boolean refine = result.points < MAX_POINTS
+                        && x1 - x0 > minWidth && top < stack.length;
+                if (refine) {
+                    double fm = f.evaluate(xm);
+                    double pm = method.evaluate(xm);
+                    if (Math.abs(fm - (f0 + f1) / 2) > tolerance
+                            || Math.abs(pm - (p0 + p1) / 2) > tolerance) {
+                        stack[top++] = xm;
+                        stack[top++] = fm;
+                        stack[top++] = pm;
+                        continue;
+                    }
+                }
+                /* das Intervall [x0, x1] ist fein genug */
+                result.function.lineTo(x1, f1);
+                result.interpolant.lineTo(x1, p1);
+                result.points++;
+                x0 = x1;
+                f0 = f1;
+                p0 = p1;
+                top -= 3;
+            }
+        }
+
+        result.minX = a;
+        result.maxX = b;
+        result.minY = minY;
+        result.maxY = maxY;
+        return result;
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-
         Graphics2D graphics = (Graphics2D) g;
         graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                 RenderingHints.VALUE_ANTIALIAS_ON);
@@ -135,34 +237,16 @@ class PlotComponent extends JComponent {
         int width = getWidth();
         double x, y;
 
-        double[] y_i = new double[n + 1];
-        for (int i = 0; i < n + 1; i++) {
-            y_i[i] = f.evaluate(a + i * 1.0 * (b - a) / n);
-        }
-        this.method.init(a, b, n, y_i);
-
-        minX = a;
-        maxX = b;
-        for (int i = 0; i < numOfPoints; i++) {
-            xData[i] = minX + i * (maxX - minX) / (numOfPoints - 1);
-        }
-
-        for (int i = 0; i < numOfPoints; i++) {
-            fData[i] = f.evaluate(xData[i]);
-            pData[i] = method.evaluate(xData[i]);
-        }
-
-        minY = Double.MAX_VALUE;
-        maxY = Double.MIN_VALUE;
-
-        for (int i = 0; i < numOfPoints; i++) {
-            if (fData[i] < minY) {
-                minY = fData[i];
-            }
-            if (fData[i] > maxY) {
-                maxY = fData[i];
-            }
+        Curve curve = this.curve;
+        if (curve == null) {
+            graphics.drawString("Berechne ...", PADDING, PADDING);
+            return;
         }
+        minX = curve.minX;
+        maxX = curve.maxX;
+        minY = curve.minY;
+        maxY = curve.maxY;
+        double a = curve.minX, b = curve.maxX;
 
 		/* draw y-axis */
         graphics.draw(new Line2D.Double(scaleX(0, width), height - PADDING,
@@ -193,33 +277,41 @@ class PlotComponent extends JComponent {
                     (int) scaleX(x_, width) + 2, (int) scaleY(0, height) + 12);
         }
 
+        /* Abbildung der Datenkoordinaten auf die Komponente */
+        double scaleX = (width - 2 * PADDING) / (maxX - minX);
+        double scaleY = (height - 2 * PADDING) / (minY - maxY);
+        AffineTransform toScreen = new AffineTransform(scaleX, 0, 0, scaleY,
+                PADDING - scaleX * minX, PADDING - scaleY * maxY);
+        Stroke stroke = graphics.getStroke();
+        graphics.setStroke(new BasicStroke(2));
+
 		/* draw "exact" solution */
         graphics.setPaint(Color.GREEN);
-
-        for (int i = 0; i < xData.length; i++) {
-            x = scaleX(xData[i], width);
-            y = scaleY(fData[i], height);
-            graphics.fill(new Ellipse2D.Double(x - 1.0, y - 1.0, 2.0, 2.0));
-        }
+        graphics.draw(toScreen.createTransformedShape(curve.function));
 
 		/* draw interpolation values */
         graphics.setPaint(Color.red);
+        graphics.draw(toScreen.createTransformedShape(curve.interpolant));
 
-        for (int i = 0; i < xData.length; i++) {
-            x = scaleX(xData[i], width);
-            y = scaleY(pData[i], height);
-            graphics.fill(new Ellipse2D.Double(x - 1.0, y - 1.0, 2.0, 2.0));
-        }
-
+        graphics.setStroke(stroke);
         graphics.setPaint(Color.blue);
 
-		/* draw Sampling Points */
-        for (int i = 0; i < n + 1; i++) {
-            x = scaleX(a + i * 1.0 * (b - a) / n, width);
-            y = scaleY(f.evaluate(a + i * 1.0 * (b - a) / n), height);
-            graphics.fill(new Ellipse2D.Double(x - 3.0, y - 3.0, 6.0, 6.0));
+		/* draw Sampling Points, bei sehr vielen nur als ein Pfad */
+        int nodes = curve.nodesX.length;
+        boolean markers = nodes * 4 < width;
+        Path2D.Double points = new Path2D.Double();
+        for (int i = 0; i < nodes; i++) {
+            x = scaleX(curve.nodesX[i], width);
+            y = scaleY(curve.nodesY[i], height);
+            if (markers) {
+                graphics.fill(new Ellipse2D.Double(x - 3.0, y - 3.0, 6.0, 6.0));
+            } else {
+                points.moveTo(x, y - 1);
+                points.lineTo(x, y + 1);
+            }
         }
-
+        if (!markers)
+            graphics.draw(points);
     }
 
     private double scaleX(double x, double width) {
@@ -255,7 +347,7 @@ public class InterpolationsPlotter extends JFrame implements ActionListener {
     /**
      * Combobox fuer die Interpolationsmethoden
      */
-    String[] modeStrings = {"Nearest", "Linear", "Poly", "Cubic"};
+    String[] modeStrings = KernelRegistry.getNames();
     JComboBox interpolationmodeBox = new JComboBox(modeStrings);
     /**
      * Combobox fuer die Funktionen
@@ -276,7 +368,7 @@ public class InterpolationsPlotter extends JFrame implements ActionListener {
     public InterpolationsPlotter() {
         super("Funktionenplotter");
 
-        interpolationmodeBox.setSelectedIndex(2);
+        interpolationmodeBox.setSelectedItem("poly");
         functionsBox.setSelectedIndex(0);
 
         mbar.add(interpolationmodeBox);
@@ -311,7 +403,7 @@ public class InterpolationsPlotter extends JFrame implements ActionListener {
         JComponent source = (JComponent) (e.getSource());
 
         if (source == (JComponent) interpolationmodeBox) {
-            plotComponent.setInterpolationMethod(interpolationmodeBox.getSelectedIndex());
+            plotComponent.setInterpolationMethod((String) interpolationmodeBox.getSelectedItem());
         } else if (source == (JComponent) functionsBox) {
             plotComponent.setFunction(functionsBox.getSelectedIndex());
         } else if (source == (JComponent) aField || source == (JComponent) bField || source == (JComponent) nField) {
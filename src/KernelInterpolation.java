@@ -0,0 +1,70 @@
+/**
+ * Interpolation durch Faltung der aequidistanten Stuetzwerte mit einem
+ * lokalen Interpolationskern. Am Rand werden die aeussersten Stuetzwerte
+ * fortgesetzt, ausserhalb der Stuetzgrenzen werden y[0] bzw. y[n]
+ * zurueckgegeben. Die Gewichte jeder Auswertung werden auf Summe 1 normiert.
+ */
+public class KernelInterpolation implements InterpolationMethod {
+
+    /**
+     * der verwendete Kern, muss eine Gewichtstabelle besitzen
+     */
+    final InterpolationKernel kernel;
+
+    /**
+     * linke und rechte Intervallgrenze x[0] bzw. x[n]
+     */
+    double a, b;
+
+    /**
+     * Anzahl an Intervallen
+     */
+    int n;
+
+    /**
+     * Intervallbreite
+     */
+    double h;
+
+    /**
+     * Stuetzwerte an den aequidistanten Stuetzstellen
+     */
+    double[] y;
+
+    public KernelInterpolation(InterpolationKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    @Override
+    public void init(double a, double b, int n, double[] y) {
+        this.a = a;
+        this.b = b;
+        this.n = n;
+        h = (b - a) / n;
+        this.y = y;
+    }
+
+    @Override
+    public double evaluate(double z) {
+        if (z <= a) {
+            return y[0];
+        }
+        if (z >= b) {
+            return y[n];
+        }
+
+        double u = (z - a) / h;
+        double support = kernel.getSupport();
+        int start = (int) Math.floor(u - support) + 1;
+        int end = (int) Math.ceil(u + support) - 1;
+
+        double sum = 0;
+        double weights = 0;
+        for (int j = start; j <= end; j++) {
+            double w = kernel.weight(j - u);
+            sum += w * y[j < 0 ? 0 : (j > n ? n : j)];
+            weights += w;
+        }
+        return sum / weights;
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Verzeichnis aller verfuegbaren Interpolationskerne. Die Kerne werden beim
+ * ersten Zugriff per {@link ServiceLoader} geladen. Zusaetzliche Kerne koennen
+ * ausserdem zur Laufzeit mit {@link #register(InterpolationKernel)}
+ * hinzugefuegt werden.
+ */
+public class KernelRegistry {
+
+    /**
+     * Namen der Kerne zu den alten Interpolations-Modi aus Picture
+     */
+    private static final String[] MODE_NAMES = {"nearest", "linear", "poly",
+            "cubic", "catmull-rom", "lanczos2", "lanczos3"};
+
+    /**
+     * die geladenen Kerne in Ladereihenfolge
+     */
+    private static Map<String, InterpolationKernel> kernels;
+
+    private KernelRegistry() {
+    }
+
+    private static synchronized Map<String, InterpolationKernel> getKernels() {
+        if (kernels == null) {
+            kernels = new LinkedHashMap<String, InterpolationKernel>();
+            ServiceLoader<InterpolationKernel> loader = ServiceLoader.load(
+                    InterpolationKernel.class,
+                    KernelRegistry.class.getClassLoader());
+            for (InterpolationKernel kernel : loader) {
+                kernels.put(kernel.getName(), kernel);
+            }
+            /*
+             * Fehlt die Service-Datei im Klassenpfad, werden zumindest die
+             * mitgelieferten Kerne bereitgestellt
+             */
+            if (kernels.isEmpty()) {
+                register(new NearestNeighbourKernel());
+                register(new LinearKernel());
+                register(new PolynomialKernel());
+                register(new CubicSplineKernel());
+                register(new CatmullRomKernel());
+                register(new Lanczos2Kernel());
+                register(new Lanczos3Kernel());
+            }
+        }
+        return kernels;
+    }
+
+    /**
+     * Fuegt einen Kern hinzu. Ein bereits vorhandener Kern gleichen Namens
+     * wird ersetzt.
+     */
+    public static synchronized void register(InterpolationKernel kernel) {
+        getKernels().put(kernel.getName(), kernel);
+    }
+
+    /**
+     * Gibt den Kern mit dem Namen name zurueck oder null, falls es keinen
+     * solchen Kern gibt
+     */
+    public static synchronized InterpolationKernel get(String name) {
+        return getKernels().get(name);
+    }
+
+    /**
+     * Gibt den Kern zu einem der Interpolations-Modi aus Picture (NEAREST,
+     * LINEAR, POLY, CUBIC, CATMULL_ROM, LANCZOS2, LANCZOS3) zurueck oder null
+     * bei einem unbekannten Modus
+     */
+    public static InterpolationKernel get(int mode) {
+        if (mode < 0 || mode >= MODE_NAMES.length)
+            return null;
+        return get(MODE_NAMES[mode]);
+    }
+
+    /**
+     * Gibt die Namen aller Kerne in Ladereihenfolge zurueck
+     */
+    public static synchronized String[] getNames() {
+        List<String> names = new ArrayList<String>(getKernels().keySet());
+        return names.toArray(new String[names.size()]);
+    }
+}
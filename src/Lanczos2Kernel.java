@@ -0,0 +1,9 @@
+/**
+ * Lanczos-Kern der Ordnung 2
+ */
+public class Lanczos2Kernel extends LanczosKernel {
+
+    public Lanczos2Kernel() {
+        super(2);
+    }
+}
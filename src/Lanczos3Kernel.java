@@ -0,0 +1,9 @@
+/**
+ * Lanczos-Kern der Ordnung 3
+ */
+public class Lanczos3Kernel extends LanczosKernel {
+
+    public Lanczos3Kernel() {
+        super(3);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Kern des Lanczos-Filters L(t) = sinc(t) * sinc(t/a) fuer |t| < a. Damit
+ * beim Aufbau der Gewichtstabellen keine Sinus-Auswertungen je Gewicht noetig
+ * sind, wird der Kern einmalig auf einem Gitter der Feinheit 1/RESOLUTION
+ * tabelliert und beim Abfragen auf den naechsten Gitterpunkt gerundet. Die
+ * daraus entstehenden Gewichte werden in ResampleWeights je neuer Stelle auf
+ * Summe 1 normiert.
+ */
+public class LanczosKernel implements InterpolationKernel {
+
+    /**
+     * Anzahl an Tabelleneintraegen je Stuetzstellenabstand
+     */
+    static final int RESOLUTION = 4096;
+
+    /**
+     * Ordnung a des Filters, zugleich der Radius des Traegers
+     */
+    final int order;
+
+    /**
+     * tabellierte Kernwerte an den Stellen i / RESOLUTION, i = 0, ...,
+     * order * RESOLUTION
+     */
+    final double[] table;
+
+    public LanczosKernel(int order) {
+        this.order = order;
+        table = new double[order * RESOLUTION + 1];
+        table[0] = 1;
+        for (int i = 1; i < table.length - 1; i++) {
+            double x = Math.PI * i / RESOLUTION;
+            table[i] = order * Math.sin(x) * Math.sin(x / order) / (x * x);
+        }
+        table[table.length - 1] = 0;
+    }
+
+    @Override
+    public String getName() {
+        return "lanczos" + order;
+    }
+
+    @Override
+    public double getSupport() {
+        return order;
+    }
+
+    @Override
+    public boolean isSeparable() {
+        return true;
+    }
+
+    @Override
+    public boolean hasWeightTable() {
+        return true;
+    }
+
+    @Override
+    public double weight(double t) {
+        t = Math.abs(t);
+        if (t >= order)
+            return 0;
+        return table[(int) (t * RESOLUTION + 0.5)];
+    }
+
+    @Override
+    public InterpolationMethod createInterpolation() {
+        return new KernelInterpolation(this);
+    }
+}
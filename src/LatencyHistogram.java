@@ -0,0 +1,101 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Threadsicheres Histogramm fuer Laufzeiten mit festen, etwa logarithmisch
+ * verteilten Klassen in Millisekunden. Das Eintragen kommt ohne Sperren aus.
+ */
+public class LatencyHistogram {
+
+    /**
+     * obere Grenzen der Klassen in Millisekunden, die letzte Klasse ist nach
+     * oben offen
+     */
+    static final long[] BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000,
+            2000, 5000, 10000};
+
+    private final AtomicLongArray counts = new AtomicLongArray(
+            BOUNDS.length + 1);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    /**
+     * Traegt eine Laufzeit in Nanosekunden ein
+     */
+    public void record(long nanos) {
+        long ms = nanos / 1000000;
+        int i = 0;
+        while (i < BOUNDS.length && ms >= BOUNDS[i]) {
+            i++;
+        }
+        counts.incrementAndGet(i);
+        total.incrementAndGet();
+        sumNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Anzahl aller eingetragenen Laufzeiten
+     */
+    public long getCount() {
+        return total.get();
+    }
+
+    /**
+     * Mittlere Laufzeit in Millisekunden
+     */
+    public double getMean() {
+        long n = total.get();
+        return n == 0 ? 0 : sumNanos.get() / 1e6 / n;
+    }
+
+    /**
+     * Obere Klassengrenze in Millisekunden, unter der der Anteil q aller
+     * Laufzeiten liegt. Liegt das Quantil in der offenen Klasse, wird
+     * Long.MAX_VALUE zurueckgegeben.
+     */
+    public long getQuantile(double q) {
+        long n = total.get();
+        long seen = 0;
+        for (int i = 0; i <= BOUNDS.length; i++) {
+            seen += counts.get(i);
+            if (seen > 0 && seen >= q * n)
+                return i < BOUNDS.length ? BOUNDS[i] : Long.MAX_VALUE;
+        }
+        return 0;
+    }
+
+    /**
+     * Gibt das Histogramm im Textformat aus, eine Zeile je Klasse mit der
+     * kumulierten Anzahl (wie bei Prometheus-Histogrammen). Zahlen werden
+     * unabhaengig von der Standard-Locale mit Dezimalpunkt geschrieben.
+     */
+    public String format(String name) {
+        return format(name, "");
+    }
+
+    /**
+     * Wie format(name), alle Zeilen erhalten zusaetzlich die Labels labels,
+     * z.B. kernel="linear" (ohne geschweifte Klammern, leer fuer keine)
+     */
+    public String format(String name, String labels) {
+        StringBuilder result = new StringBuilder();
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+        long seen = 0;
+        for (int i = 0; i <= BOUNDS.length; i++) {
+            seen += counts.get(i);
+            String le = i < BOUNDS.length ? String.valueOf(BOUNDS[i]) : "+Inf";
+            result.append(name).append("_bucket{").append(prefix)
+                    .append("le=\"").append(le).append("\"} ").append(seen)
+                    .append('\n');
+        }
+        result.append(name).append("_count").append(suffix).append(' ')
+                .append(total.get()).append('\n');
+        result.append(name).append("_sum").append(suffix).append(' ')
+                .append(String.format(Locale.ROOT, "%.3f",
+                        sumNanos.get() / 1e6))
+                .append('\n');
+        return result.toString();
+    }
+}
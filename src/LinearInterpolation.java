@@ -1,7 +1,4 @@
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Die Klasse LinearInterpolation beschreibt ein stueckweises
@@ -23,6 +20,11 @@ public class LinearInterpolation implements InterpolationMethod {
      */
     double[] y;
 
+    /**
+     * Teilfolgen bis zu dieser Laenge werden durch Einfuegen sortiert
+     */
+    private static final int INSERTION_SORT_LENGTH = 32;
+
     @Override
     public void init(double a, double b, int n, double[] y) {
         this.y = y;
@@ -43,39 +45,107 @@ public class LinearInterpolation implements InterpolationMethod {
      * @param x Stuetzstellen
      * @param y Stuetzwerte
      */
-    public void init(final double[] x, double[] y) {
+    public void init(double[] x, double[] y) {
+        init(x, y, false);
+    }
+
+    /**
+     * Wie init(x, y). Ist owned true, werden x und y ohne Kopie uebernommen
+     * und, falls noetig, an Ort und Stelle sortiert. Der Aufrufer darf die
+     * Arrays danach nicht mehr veraendern.
+     * <p/>
+     * Sind die Stuetzstellen bereits geordnet, was in einem Durchlauf geprueft
+     * wird, kostet init nur O(n). Sonst werden x und y gemeinsam mit einem
+     * stabilen Mergesort auf den primitiven Arrays sortiert, gleiche
+     * Stuetzstellen behalten also ihre Reihenfolge.
+     *
+     * @param x     Stuetzstellen
+     * @param y     Stuetzwerte
+     * @param owned true, wenn die Arrays uebernommen werden duerfen
+     */
+    public void init(double[] x, double[] y, boolean owned) {
         if (x.length != y.length || x.length == 0)
             return;
 
-        int n = x.length;
-
-		/* die Stuetzstellen werden der Groesse nach geordnet */
-        List<Integer> indices = new ArrayList<Integer>(n);
-        for (int i = 0; i < n; i++)
-            indices.add(i);
-
-        Comparator<Integer> comparator = new Comparator<Integer>() {
-
-            @Override
-            public int compare(Integer i, Integer j) {
-                if (x[i] - x[j] < 0)
-                    return -1;
-                if (x[i] - x[j] > 0)
-                    return 1;
-                else
-                    return 0;
-            }
-        };
+        if (!owned) {
+            x = Arrays.copyOf(x, x.length);
+            y = Arrays.copyOf(y, y.length);
+        }
+        if (!isSorted(x))
+            sort(x, y);
+        this.x = x;
+        this.y = y;
+    }
 
-        Collections.sort(indices, comparator);
+    private static boolean isSorted(double[] x) {
+        for (int i = 1; i < x.length; i++) {
+            if (x[i] < x[i - 1])
+                return false;
+        }
+        return true;
+    }
 
-        this.x = new double[n];
-        this.y = new double[n];
+    /**
+     * Sortiert x aufsteigend und vertauscht y genauso (stabiler Mergesort von
+     * unten nach oben, mit Einfuegesortieren fuer kurze Teilfolgen)
+     */
+    static void sort(double[] x, double[] y) {
+        int n = x.length;
+        for (int start = 0; start < n; start += INSERTION_SORT_LENGTH) {
+            int end = Math.min(start + INSERTION_SORT_LENGTH, n);
+            for (int i = start + 1; i < end; i++) {
+                double xi = x[i], yi = y[i];
+                int j = i - 1;
+                while (j >= start && x[j] > xi) {
+                    x[j + 1] = x[j];
+                    y[j + 1] = y[j];
+                    j--;
+                }
+                x[j + 1] = xi;
+                y[j + 1] = yi;
+            }
+        }
+        if (n <= INSERTION_SORT_LENGTH)
+            return;
 
-        for (int i = 0; i < n; i++) {
-            int index = indices.get(i);
-            this.x[i] = x[index];
-            this.y[i] = y[index];
+        double[] srcX = x, srcY = y;
+        double[] dstX = new double[n], dstY = new double[n];
+        for (int width = INSERTION_SORT_LENGTH; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + 2 * width, n);
+                int i = lo, j = mid, k = lo;
+                /* bereits geordnete Nachbarn muessen nur kopiert werden */
+                if (mid == hi || srcX[mid - 1] <= srcX[mid]) {
+                    System.arraycopy(srcX, lo, dstX, lo, hi - lo);
+                    System.arraycopy(srcY, lo, dstY, lo, hi - lo);
+                    continue;
+                }
+                while (i < mid && j < hi) {
+                    if (srcX[j] < srcX[i]) {
+                        dstX[k] = srcX[j];
+                        dstY[k++] = srcY[j++];
+                    } else {
+                        dstX[k] = srcX[i];
+                        dstY[k++] = srcY[i++];
+                    }
+                }
+                System.arraycopy(srcX, i, dstX, k, mid - i);
+                System.arraycopy(srcY, i, dstY, k, mid - i);
+                k += mid - i;
+                System.arraycopy(srcX, j, dstX, k, hi - j);
+                System.arraycopy(srcY, j, dstY, k, hi - j);
+            }
+            double[] t = srcX;
+            srcX = dstX;
+            dstX = t;
+            t = srcY;
+            srcY = dstY;
+            dstY = t;
+        }
+        if (srcX != x) {
+            System.arraycopy(srcX, 0, x, 0, n);
+            System.arraycopy(srcY, 0, y, 0, n);
         }
     }
 
@@ -0,0 +1,38 @@
+/**
+ * Kern der stueckweise linearen Interpolation (Dreieckskern)
+ */
+public class LinearKernel implements InterpolationKernel {
+
+    @Override
+    public String getName() {
+        return "linear";
+    }
+
+    @Override
+    public double getSupport() {
+        return 1;
+    }
+
+    @Override
+    public boolean isSeparable() {
+        return true;
+    }
+
+    @Override
+    public boolean hasWeightTable() {
+        return true;
+    }
+
+    @Override
+    public double weight(double t) {
+        t = Math.abs(t);
+        if (t < 1)
+            return 1 - t;
+        return 0;
+    }
+
+    @Override
+    public InterpolationMethod createInterpolation() {
+        return new LinearInterpolation();
+    }
+}
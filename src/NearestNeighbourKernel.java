@@ -0,0 +1,41 @@
+/**
+ * Kern der Interpolation mit dem naechsten Nachbarn (Rechteckkern)
+ */
+public class NearestNeighbourKernel implements InterpolationKernel {
+
+    @Override
+    public String getName() {
+        return "nearest";
+    }
+
+    @Override
+    public double getSupport() {
+        return 0.5;
+    }
+
+    @Override
+    public boolean isSeparable() {
+        return true;
+    }
+
+    @Override
+    public boolean hasWeightTable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc} Wie bei NearestNeighbour gewinnt bei exakt mittiger Lage
+     * die groessere Stuetzstelle.
+     */
+    @Override
+    public double weight(double t) {
+        if (t > -0.5 && t <= 0.5)
+            return 1;
+        return 0;
+    }
+
+    @Override
+    public InterpolationMethod createInterpolation() {
+        return new NearestNeighbour();
+    }
+}
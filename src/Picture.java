@@ -1,10 +1,20 @@
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
 
 /**
  * Diese Klasse verwaltet ein Bild im RGB-Format. Sie ermoeglicht das
@@ -22,13 +32,17 @@ public class Picture {
     final static int LINEAR = 1; /* lineare Interpolation */
     final static int POLY = 2; /* Interpolation mit Polynominterpolation */
     final static int CUBIC = 3; /* Interpolation mit kubischen Splines */
+    final static int CATMULL_ROM = 4; /* lokale kubische Faltung nach Keys */
+    final static int LANCZOS2 = 5; /* Lanczos-Filter mit a = 2 */
+    final static int LANCZOS3 = 6; /* Lanczos-Filter mit a = 3 */
 
     /**
-     * die verschiedenen Grundfarben des Farbraums RGB
+     * die verschiedenen Grundfarben des Farbraums RGB und der Alphakanal
      */
     final static int RED = 0;
     final static int GREEN = 1;
     final static int BLUE = 2;
+    final static int ALPHA = 3;
 
     /**
      * unsere Membervariablen für das Bild
@@ -40,12 +54,55 @@ public class Picture {
      */
     private int width, height;
 
+    /**
+     * Gibt an, ob beim Skalieren in linearen Lichtwerten statt in den
+     * sRGB-kodierten Farbwerten interpoliert wird
+     */
+    private boolean linearLight;
+
+    /**
+     * Gibt an, ob das Bild beim Skalieren an den Raendern periodisch
+     * fortgesetzt wird statt den Randwert zu wiederholen
+     */
+    private boolean periodic;
+
+    /**
+     * Gibt an, ob img auch ausserhalb dieses Objekts verwendet werden kann.
+     * Vor dem Veraendern einzelner Pixel wird dann zuerst eine eigene Kopie
+     * angelegt.
+     */
+    private boolean shared;
+
+    /**
+     * Bildtyp (BufferedImage.TYPE_...) der Ergebnisse von scale, 0 fuer die
+     * automatische Wahl passend zum Ausgangsbild
+     */
+    private int outputType;
+
+    /**
+     * Qualitaet fuer save zwischen 0 und 1, negativ fuer die Voreinstellung
+     * des Kodierers
+     */
+    private float compressionQuality = -1;
+
+    /**
+     * Gibt an, ob save progressiv kodiert, sofern das Format es erlaubt
+     */
+    private boolean progressive;
+
+    /**
+     * Bildpyramide zum aktuellen Bild, wird bei jeder Aenderung verworfen
+     */
+    private ImagePyramid pyramid;
+
     /**
      * Konstruktor Lädt ein Bild mit dem Pfad filename
      */
     public Picture(String filename) throws IOException {
         File f = new File(filename);
+        long start = ScaleMetrics.now();
         img = ImageIO.read(f);
+        ScaleMetrics.recordCodec(ScaleMetrics.DECODE, ScaleMetrics.now() - start);
         if (!isNull()) {
             width = img.getWidth();
             height = img.getHeight();
@@ -62,20 +119,33 @@ public class Picture {
     }
 
     /**
-     * Erzeugt eine Kopie des Bildes
+     * Erzeugt eine Kopie des Bildes. Die Pixel werden erst dann kopiert, wenn
+     * sie mit setPixel veraendert werden (copy-on-write).
      */
     public Picture(BufferedImage img) {
         if (img != null) {
-            ColorModel cm = img.getColorModel();
-            boolean isAlphaPremultiplied = cm.isAlphaPremultiplied();
-            WritableRaster raster = img.copyData(null);
-            this.img = new BufferedImage(cm, raster, isAlphaPremultiplied, null);
+            this.img = img;
+            shared = true;
             width = img.getWidth();
             height = img.getHeight();
         }
 
     }
 
+    /**
+     * Legt eine eigene Kopie des Bildes an, falls es noch geteilt wird
+     */
+    private void ensureOwnImage() {
+        pyramid = null;
+        if (!shared)
+            return;
+        ColorModel cm = img.getColorModel();
+        boolean isAlphaPremultiplied = cm.isAlphaPremultiplied();
+        WritableRaster raster = img.copyData(null);
+        img = new BufferedImage(cm, raster, isAlphaPremultiplied, null);
+        shared = false;
+    }
+
     /**
      * Gibt die Breite des Bildes zurueck
      */
@@ -90,6 +160,101 @@ public class Picture {
         return height;
     }
 
+    /**
+     * Legt fest, ob scale in linearen Lichtwerten interpoliert. Das vermeidet
+     * das Abdunkeln kontrastreicher Kanten beim Verkleinern.
+     */
+    public void setLinearLight(boolean linearLight) {
+        this.linearLight = linearLight;
+        pyramid = null;
+    }
+
+    /**
+     * Gibt an, ob scale in linearen Lichtwerten interpoliert
+     */
+    public boolean isLinearLight() {
+        return linearLight;
+    }
+
+    /**
+     * Legt fest, ob scale das Bild an den Raendern periodisch fortsetzt, wie
+     * es fuer kachelbare Texturen noetig ist. Dann folgt auf die letzte Spalte
+     * wieder die erste und auf die letzte Zeile die erste. Unterstuetzt wird
+     * das von allen Kernen mit Gewichtstabelle und von den kubischen Splines,
+     * die Polynominterpolation setzt weiterhin den Randwert fort.
+     */
+    public void setPeriodic(boolean periodic) {
+        this.periodic = periodic;
+        pyramid = null;
+    }
+
+    /**
+     * Gibt an, ob scale das Bild periodisch fortsetzt
+     */
+    public boolean isPeriodic() {
+        return periodic;
+    }
+
+    /**
+     * Legt den Bildtyp fest, in den scale das Ergebnis schreibt. Erlaubt sind
+     * BufferedImage.TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_3BYTE_BGR,
+     * TYPE_BYTE_GRAY und TYPE_USHORT_GRAY. Mit 0 (Voreinstellung) wird
+     * TYPE_INT_ARGB gewaehlt, wenn das Bild einen Alphakanal hat, sonst
+     * TYPE_3BYTE_BGR fuer Bilder dieses Typs (z.B. JPEG), fuer
+     * Graustufenbilder TYPE_BYTE_GRAY bzw. TYPE_USHORT_GRAY mit ihrer
+     * Bittiefe und TYPE_INT_RGB fuer alle anderen. Ohne Alphakanal im
+     * Bildtyp gehen Transparenzen verloren, bei Graustufen wird die
+     * Helligkeit nach ITU-R BT.601 geschrieben.
+     */
+    public void setOutputType(int outputType) {
+        switch (outputType) {
+            case 0:
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_USHORT_GRAY:
+                this.outputType = outputType;
+                break;
+            default:
+                throw new IllegalArgumentException(
+                        "Nicht unterstuetzter Bildtyp " + outputType);
+        }
+    }
+
+    public int getOutputType() {
+        return outputType;
+    }
+
+    /**
+     * Legt die Qualitaet fuer save fest, von 0 (kleinste Datei) bis 1 (beste
+     * Qualitaet bzw. schnellste Kodierung). Bei JPEG ist das die
+     * Bildqualitaet, bei PNG bestimmt sie die Kompressionsstufe. Ein
+     * negativer Wert verwendet die Voreinstellung des Kodierers.
+     */
+    public void setCompressionQuality(float compressionQuality) {
+        if (compressionQuality > 1)
+            throw new IllegalArgumentException(
+                    "Qualitaet muss hoechstens 1 sein");
+        this.compressionQuality = compressionQuality;
+    }
+
+    public float getCompressionQuality() {
+        return compressionQuality;
+    }
+
+    /**
+     * Legt fest, ob save progressiv (JPEG) bzw. mit Zeilensprung (PNG)
+     * kodiert
+     */
+    public void setProgressive(boolean progressive) {
+        this.progressive = progressive;
+    }
+
+    public boolean isProgressive() {
+        return progressive;
+    }
+
     /**
      * Gibt an, ob aktuell kein Bild verwaltet wird
      */
@@ -98,18 +263,142 @@ public class Picture {
     }
 
     /**
-     * Gibt das Bild zurueck
+     * Gibt das Bild zurueck. Das Bild kann mit anderen Picture-Objekten
+     * geteilt sein und darf daher nicht direkt veraendert werden.
      */
     public BufferedImage getImage() {
+        shared = true;
         return img;
     }
 
     /**
-     * Speichert das Bild im Pfad filename im Format formatName
+     * Gibt die Bildpyramide zum aktuellen Bild zurueck, siehe ImagePyramid.
+     * Sie wird beim ersten Aufruf angelegt und verworfen, sobald sich das
+     * Bild oder linearLight bzw. periodic aendern.
+     */
+    public ImagePyramid getPyramid() {
+        if (pyramid == null)
+            pyramid = new ImagePyramid(this);
+        return pyramid;
+    }
+
+    /**
+     * Speichert das Bild im Pfad filename im Format formatName mit den
+     * Einstellungen aus setCompressionQuality und setProgressive. Das Bild
+     * wird zuerst in eine temporaere Datei im selben Verzeichnis geschrieben,
+     * die danach (wenn moeglich atomar) an die Stelle von filename tritt.
+     * Gibt es keinen passenden Encoder oder scheitert das Schreiben, wird eine
+     * IOException geworfen und eine vorhandene Datei bleibt unveraendert.
      */
     public void save(String filename, String formatName) throws IOException {
-        File f = new File(filename);
-        ImageIO.write(img, formatName, f);
+        ImageWriter writer = findWriter(formatName);
+        if (writer == null)
+            throw new IOException("Format " + formatName
+                    + " kann fuer dieses Bild nicht geschrieben werden");
+        File f = new File(filename).getAbsoluteFile();
+        File temp;
+        try {
+            temp = File.createTempFile(f.getName(), ".tmp", f.getParentFile());
+        } catch (IOException e) {
+            writer.dispose();
+            throw e;
+        }
+        boolean written = false;
+        try {
+            ImageOutputStream stream = ImageIO.createImageOutputStream(temp);
+            if (stream == null) {
+                writer.dispose();
+                throw new IOException("Datei " + filename
+                        + " kann nicht geschrieben werden");
+            }
+            try {
+                write(stream, writer);
+            } finally {
+                stream.close();
+            }
+            try {
+                Files.move(temp.toPath(), f.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), f.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            written = true;
+        } finally {
+            if (!written)
+                temp.delete();
+        }
+    }
+
+    /**
+     * Schreibt das Bild im Format formatName in den Strom out. Gibt false
+     * zurueck, falls es fuer das Bild keinen passenden Encoder gibt, out
+     * bleibt dann unberuehrt.
+     */
+    public boolean save(OutputStream out, String formatName) throws IOException {
+        ImageWriter writer = findWriter(formatName);
+        if (writer == null)
+            return false;
+        ImageOutputStream stream = ImageIO.createImageOutputStream(out);
+        try {
+            write(stream, writer);
+        } finally {
+            stream.close();
+        }
+        return true;
+    }
+
+    /**
+     * Gibt an, ob es fuer das Bild einen Encoder im Format formatName gibt
+     */
+    public boolean canSave(String formatName) {
+        ImageWriter writer = findWriter(formatName);
+        if (writer == null)
+            return false;
+        writer.dispose();
+        return true;
+    }
+
+    /**
+     * Gibt den ersten ImageWriter zurueck, der das Bild im Format formatName
+     * schreiben kann, oder null
+     */
+    private ImageWriter findWriter(String formatName) {
+        if (isNull())
+            return null;
+        Iterator<ImageWriter> writers = ImageIO.getImageWriters(
+                ImageTypeSpecifier.createFromRenderedImage(img), formatName);
+        return writers.hasNext() ? writers.next() : null;
+    }
+
+    /**
+     * Kodiert das Bild mit writer und gibt diesen danach frei. Qualitaet und
+     * progressive Kodierung werden ueber ImageWriteParam gesetzt, soweit der
+     * Kodierer sie unterstuetzt.
+     */
+    private void write(ImageOutputStream stream, ImageWriter writer)
+            throws IOException {
+        long start = ScaleMetrics.now();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (compressionQuality >= 0 && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                String[] types = param.getCompressionTypes();
+                if (types != null && param.getCompressionType() == null)
+                    param.setCompressionType(types[0]);
+                param.setCompressionQuality(compressionQuality);
+            }
+            if (param.canWriteProgressive())
+                param.setProgressiveMode(progressive
+                        ? ImageWriteParam.MODE_DEFAULT
+                        : ImageWriteParam.MODE_DISABLED);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        ScaleMetrics.recordCodec(ScaleMetrics.ENCODE, ScaleMetrics.now() - start);
     }
 
     /**
@@ -135,15 +424,28 @@ public class Picture {
     /**
      * Gibt den Farbwert der Farbe color an der Stelle (x,y) im Bild zurueck.
      * Indizierung erfolgt in beiden Dimensionen von 1 bis width bzw. height.
-     * color entspricht: 0 = rot, 1 = gruen, 2 = blau Der resultierende Farbwert
-     * ist aus dem Intervall [0,1]
+     * color entspricht: 0 = rot, 1 = gruen, 2 = blau, 3 = alpha Der
+     * resultierende Farbwert ist aus dem Intervall [0,1], bei Bildern mit
+     * Gleitkommawerten auch darueber. Bilder mit mehr als 8 Bit je Farbe
+     * werden in voller Genauigkeit gelesen.
      */
     public double getPixel(int x, int y, int color) {
         x = x - 1;
         y = y - 1;
 
+        if (RasterAccess.isGray(img) || RasterAccess.isHighDepth(img)) {
+            if (color < 0 || color > ALPHA)
+                return 0;
+            if (color == ALPHA && !img.getColorModel().hasAlpha())
+                return 1;
+            /* bei Graustufen ist jede Grundfarbe der Grauwert */
+            int band = img.getRaster().getNumBands() == 1 ? 0 : color;
+            return img.getRaster().getSampleDouble(x, y, band)
+                    / RasterAccess.maxSample(img, band);
+        }
+
         int rgb = img.getRGB(x, y);
-        Color col = new Color(rgb);
+        Color col = new Color(rgb, true);
         double c;
 
         switch (color) {
@@ -156,6 +458,9 @@ public class Picture {
             case 2:
                 c = col.getBlue();
                 break;
+            case 3:
+                c = col.getAlpha();
+                break;
             default:
                 c = 0;
         }
@@ -170,6 +475,21 @@ public class Picture {
      * Farbe an den entsprechenden Randwert angepasst.
      */
     public void setPixel(int x, int y, double r, double g, double b) {
+        setPixel(x, y, r, g, b, 1);
+    }
+
+    /**
+     * Setzt an der Stelle (x,y) im Bild die Farbe bestehend aus dem RGB-Wert
+     * (r,g,b) mit der Deckkraft alpha. Die Farbwerte sind nicht mit alpha
+     * multipliziert. Werte ausserhalb von [0,1] werden an den entsprechenden
+     * Randwert angepasst.
+     */
+    public void setPixel(int x, int y, double r, double g, double b,
+                         double alpha) {
+        if (alpha < 0)
+            alpha = 0;
+        if (alpha > 1)
+            alpha = 1;
         if (r < 0)
             r = 0;
         if (r > 1)
@@ -182,43 +502,541 @@ public class Picture {
             b = 0;
         if (b > 1)
             b = 1;
+        if (RasterAccess.isGray(img) || RasterAccess.isHighDepth(img)) {
+            setSamples(x - 1, y - 1, r, g, b, alpha);
+            return;
+        }
         Color col = new Color((int) Math.round(r * 255.),
-                (int) Math.round(g * 255.), (int) Math.round(b * 255.));
+                (int) Math.round(g * 255.), (int) Math.round(b * 255.),
+                (int) Math.round(alpha * 255.));
+        ensureOwnImage();
         img.setRGB(x - 1, y - 1, col.getRGB());
     }
 
+    /**
+     * Schreibt die Farbe in voller Genauigkeit direkt in die Baender eines
+     * Graustufenbilds oder eines Bildes mit isHighDepth
+     */
+    private void setSamples(int x, int y, double r, double g, double b,
+                            double alpha) {
+        ensureOwnImage();
+        WritableRaster raster = img.getRaster();
+        ColorModel cm = img.getColorModel();
+        double[] values = raster.getNumBands() == 1 ? new double[]{0.299 * r
+                + 0.587 * g + 0.114 * b} : new double[]{r, g, b, alpha};
+        for (int band = 0; band < raster.getNumBands(); band++) {
+            double v = values[band];
+            if (cm.isAlphaPremultiplied() && band < ALPHA)
+                v *= alpha;
+            if (!RasterAccess.isFloatingPoint(img))
+                v = Math.round(v * RasterAccess.maxSample(img, band));
+            raster.setSample(x, y, band, v);
+        }
+    }
+
     /**
      * Skaliert das Bild und passt die Breite zu newWidth und die Hoehe zu
      * newHeight an. Das bei der Skalierung verwendete Interpolationsverfahren
      * wird mit dem Parameter interpolationMode uebergeben: 0 = NearestNeighbor,
      * 1 = LinearInterpolation, 2 = Polynominterpolation, 3 = Kubische
-     * Spline-Interpolation
+     * Spline-Interpolation, 4 = Catmull-Rom, 5 = Lanczos-2, 6 = Lanczos-3
      */
     public void scale(int newWidth, int newHeight, int interpolationMode) {
+        InterpolationKernel kernel = KernelRegistry.get(interpolationMode);
+        if (kernel == null)
+            return;
+        scale(newWidth, newHeight, kernel);
+    }
 
-		/* Tatsaechlicher Skalierungsfaktor in x- und y-Richtung */
-        double scale_x = (double) newWidth / width;
-        double scale_y = (double) newHeight / height;
+    /**
+     * Skaliert das Bild mit dem Interpolationskern namens kernelName aus der
+     * KernelRegistry. Ist kein solcher Kern vorhanden, bleibt das Bild
+     * unveraendert.
+     */
+    public void scale(int newWidth, int newHeight, String kernelName) {
+        InterpolationKernel kernel = KernelRegistry.get(kernelName);
+        if (kernel == null)
+            return;
+        scale(newWidth, newHeight, kernel);
+    }
 
-		/* Ermittlung des Interpolationsverfahren */
-        InterpolationMethod interpolation;
+    /**
+     * Skaliert das Bild mit dem Interpolationskern kernel. Es werden nur
+     * separierbare Kerne unterstuetzt, bei allen anderen bleibt das Bild
+     * unveraendert. Kerne mit Gewichtstabelle werden ueber vorberechnete
+     * Gewichte je neuer Pixelstelle ausgewertet, alle anderen ueber ihr
+     * Interpolationsverfahren.
+     */
+    public void scale(int newWidth, int newHeight, InterpolationKernel kernel) {
+        scale(new Rectangle(0, 0, width, height), newWidth, newHeight,
+                new Rectangle(0, 0, newWidth, newHeight), kernel);
+    }
 
-        switch (interpolationMode) {
-            case NEAREST:
-                interpolation = new NearestNeighbour();
-                break;
-            case LINEAR:
-                interpolation = new LinearInterpolation();
-                break;
-            case POLY:
-                interpolation = new NewtonPolynom();
-                break;
-            case CUBIC:
-                interpolation = new CubicSpline();
-                break;
+    /**
+     * Skaliert den Ausschnitt source des Bildes auf die Groesse newWidth x
+     * newHeight und ersetzt das Bild durch das Ergebnis (Zuschneiden und
+     * Skalieren in einem Schritt). Kerne mit Gewichtstabelle verwenden an den
+     * Raendern des Ausschnitts die tatsaechlichen Nachbarpixel.
+     */
+    public void scale(Rectangle source, int newWidth, int newHeight,
+                      InterpolationKernel kernel) {
+        scale(source, newWidth, newHeight, new Rectangle(0, 0, newWidth,
+                newHeight), kernel);
+    }
+
+    /**
+     * Berechnet vom auf newWidth x newHeight skalierten Bild nur den
+     * Ausschnitt target und ersetzt das Bild durch diesen, z.B. fuer Kacheln.
+     * Das Ergebnis stimmt mit dem entsprechenden Ausschnitt des ganz
+     * skalierten Bildes ueberein.
+     */
+    public void scale(int newWidth, int newHeight, Rectangle target,
+                      InterpolationKernel kernel) {
+        scale(new Rectangle(0, 0, width, height), newWidth, newHeight, target,
+                kernel);
+    }
+
+    /**
+     * Skaliert den Ausschnitt source des Bildes auf die Groesse newWidth x
+     * newHeight und ersetzt das Bild durch den Ausschnitt target des
+     * Ergebnisses. Gelesen werden nur die Zeilen und Spalten, die in target
+     * eingehen, bei Kernen mit Gewichtstabelle einschliesslich ihres Traegers
+     * (begrenzt auf das Bild). Globale Verfahren werden nur ueber die Pixel
+     * in source aufgebaut, aber nur an den Stellen in target ausgewertet.
+     */
+    public void scale(Rectangle source, int newWidth, int newHeight,
+                      Rectangle target, InterpolationKernel kernel) {
+        if (!kernel.isSeparable())
+            return;
+        if (source.isEmpty() || source.x < 0 || source.y < 0
+                || source.x + source.width > width
+                || source.y + source.height > height)
+            throw new IllegalArgumentException("Ausschnitt " + source
+                    + " liegt nicht im Bild");
+        if (target.isEmpty() || target.x < 0 || target.y < 0
+                || target.x + target.width > newWidth
+                || target.y + target.height > newHeight)
+            throw new IllegalArgumentException("Ausschnitt " + target
+                    + " liegt nicht im skalierten Bild");
+
+        ScaleMetrics.Sample sample = ScaleMetrics.start(kernel.getName(),
+                source.width, source.height, target.width, target.height);
+
+        try {
+            double[][] result;
+            if (kernel.hasWeightTable()) {
+                ResampleWeights horizontal = new ResampleWeights(kernel,
+                        width, source.x, source.width, newWidth, target.x,
+                        target.width, periodic);
+                ResampleWeights vertical = new ResampleWeights(kernel, height,
+                        source.y, source.height, newHeight, target.y,
+                        target.height, periodic);
+                sample.addFits(2);
+                sample.endPhase(ScaleMetrics.INIT);
+
+                Rectangle region = new Rectangle(horizontal.first,
+                        vertical.first, horizontal.last - horizontal.first + 1,
+                        vertical.last - vertical.first + 1);
+                double[][] channels = readChannels(region);
+                sample.endPhase(ScaleMetrics.READ);
+
+                result = scaleWithWeights(channels, region, horizontal,
+                        vertical, sample);
+            } else {
+                double[][] channels = readChannels(source);
+                sample.endPhase(ScaleMetrics.READ);
+
+                InterpolationMethod interpolation = kernel
+                        .createInterpolation();
+                if (interpolation instanceof CubicSpline)
+                    ((CubicSpline) interpolation).setPeriodic(periodic);
+                result = scaleWithInterpolation(channels, source.width,
+                        source.height, newWidth, newHeight, target,
+                        interpolation, sample);
+            }
+
+            /*******************************************************/
+            /**
+             * Jetzt wird mit allen Auswertungen aus result das neue Bild
+             * gesetzt
+             */
+            writeChannels(result, target.width, target.height);
+            sample.endPhase(ScaleMetrics.WRITE);
+        } finally {
+            sample.finish();
+        }
+    }
+
+    /**
+     * Bildet alle Farben des Bildes mit der 3D-Farbtabelle lut ab. Der
+     * Alphakanal bleibt unveraendert. Die Tabelle wirkt auf die sRGB-kodierten
+     * Farbwerte, unabhaengig von linearLight.
+     */
+    public void apply(ColorLookupTable lut) {
+        ensureOwnImage();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            RasterAccess.readRow(img, y, row);
+            lut.apply(row, 0, width);
+            RasterAccess.writeRow(img, y, row);
+        }
+    }
+
+    /**
+     * Liest die drei Grundfarben des Ausschnitts region in je ein Feld. Der
+     * Farbwert an der Stelle (region.x + x, region.y + y) (ab 0 gezaehlt)
+     * steht an Index y * region.width + x und liegt
+     * im Intervall [0,1], im Modus linearLight als linearer Lichtwert.
+     * Besitzt das Bild einen Alphakanal, wird dieser als
+     * viertes Feld gelesen und die Grundfarben werden mit ihm multipliziert,
+     * damit beim Interpolieren keine Farbsaeume an transparenten Kanten
+     * entstehen.
+     */
+    private double[][] readChannels(Rectangle region) {
+        if (RasterAccess.isGray(img))
+            return readGray(region);
+        if (RasterAccess.isHighDepth(img))
+            return readComponents(region);
+        boolean hasAlpha = img.getColorModel().hasAlpha();
+        int w = region.width, h = region.height;
+        double[][] channels = new double[hasAlpha ? 4 : 3][w * h];
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            RasterAccess.readRow(img, region.x, region.y + y, w, row);
+            for (int x = 0; x < w; x++) {
+                int rgb = row[x];
+                int i = y * w + x;
+                channels[RED][i] = decode((rgb >> 16) & 0xFF);
+                channels[GREEN][i] = decode((rgb >> 8) & 0xFF);
+                channels[BLUE][i] = decode(rgb & 0xFF);
+                if (hasAlpha) {
+                    double alpha = (rgb >>> 24) / 255.;
+                    channels[RED][i] *= alpha;
+                    channels[GREEN][i] *= alpha;
+                    channels[BLUE][i] *= alpha;
+                    channels[ALPHA][i] = alpha;
+                }
+            }
+        }
+        return channels;
+    }
+
+    /**
+     * Liest den Ausschnitt region eines Graustufenbilds (8 oder 16 Bit) in
+     * ein einziges Feld, angeordnet wie in readChannels. Skaliert wird dann
+     * nur diese eine Ebene statt dreier gleicher Grundfarben.
+     */
+    private double[][] readGray(Rectangle region) {
+        int w = region.width, h = region.height;
+        int max = (1 << img.getSampleModel().getSampleSize(0)) - 1;
+        double[] gray = new double[w * h];
+        int[] samples = new int[w];
+        for (int y = 0; y < h; y++) {
+            RasterAccess.readSamples(img, region.x, region.y + y, w, samples);
+            for (int x = 0; x < w; x++) {
+                gray[y * w + x] = decode(samples[x], max);
+            }
+        }
+        return new double[][]{gray};
+    }
+
+    /**
+     * Liest den Ausschnitt region eines Bildes mit 16 Bit, int-, float- oder
+     * double-Werten je Band in voller Genauigkeit, angeordnet wie in
+     * readChannels. Gleitkommawerte werden nicht auf [0,1] begrenzt
+     * (HDR-Bilder). Bereits vormultiplizierte Farben werden fuer die
+     * Umrechnung in lineares Licht kurz durch alpha geteilt.
+     */
+    private double[][] readComponents(Rectangle region) {
+        ColorModel cm = img.getColorModel();
+        int bands = img.getRaster().getNumBands();
+        boolean hasAlpha = cm.hasAlpha();
+        boolean premultiplied = cm.isAlphaPremultiplied();
+        int colors = hasAlpha ? bands - 1 : bands;
+        int w = region.width, h = region.height;
+        double[][] channels = new double[bands][w * h];
+        double[] row = new double[w];
+        for (int b = 0; b < bands; b++) {
+            double max = RasterAccess.maxSample(img, b);
+            for (int y = 0; y < h; y++) {
+                RasterAccess.readBand(img, region.x, region.y + y, w, b, row);
+                for (int x = 0; x < w; x++) {
+                    channels[b][y * w + x] = row[x] / max;
+                }
+            }
+        }
+        if (!linearLight && (!hasAlpha || premultiplied))
+            return channels;
+        for (int i = 0; i < w * h; i++) {
+            double alpha = hasAlpha ? channels[ALPHA][i] : 1;
+            for (int c = 0; c < colors; c++) {
+                double v = channels[c][i];
+                if (premultiplied)
+                    v = alpha > 0 ? v / alpha : 0;
+                if (linearLight)
+                    v = SRGB.decode(v);
+                channels[c][i] = v * alpha;
+            }
+        }
+        return channels;
+    }
+
+    /**
+     * Ersetzt das Bild durch ein neues der Groesse newWidth x newHeight im
+     * ColorModel des bisherigen Bildes, das mit isHighDepth erkannt wurde.
+     * Gegenstueck zu readComponents.
+     */
+    private void writeComponents(double[][] channels, int newWidth,
+                                 int newHeight) {
+        ColorModel cm = img.getColorModel();
+        boolean floating = RasterAccess.isFloatingPoint(img);
+        double[] max = new double[channels.length];
+        for (int b = 0; b < channels.length; b++) {
+            max[b] = RasterAccess.maxSample(img, b);
+        }
+        img = new BufferedImage(cm, cm.createCompatibleWritableRaster(
+                newWidth, newHeight), cm.isAlphaPremultiplied(), null);
+        shared = false;
+        pyramid = null;
+        width = newWidth;
+        height = newHeight;
+
+        boolean hasAlpha = cm.hasAlpha();
+        boolean premultiplied = cm.isAlphaPremultiplied();
+        int colors = hasAlpha ? channels.length - 1 : channels.length;
+        double[] row = new double[newWidth];
+        for (int b = 0; b < channels.length; b++) {
+            for (int y = 0; y < newHeight; y++) {
+                for (int x = 0; x < newWidth; x++) {
+                    int i = y * newWidth + x;
+                    double alpha = hasAlpha ? Math.min(Math.max(
+                            channels[ALPHA][i], 0), 1) : 1;
+                    double v = channels[b][i];
+                    if (b == colors) {
+                        v = alpha;
+                    } else {
+                        if (hasAlpha)
+                            v = alpha > 0 ? v / alpha : 0;
+                        if (!floating)
+                            v = Math.min(Math.max(v, 0), 1);
+                        if (linearLight)
+                            v = SRGB.encode(v);
+                        if (premultiplied)
+                            v *= alpha;
+                    }
+                    row[x] = floating ? v : Math.round(v * max[b]);
+                }
+                RasterAccess.writeBand(img, y, b, row);
+            }
+        }
+    }
+
+    /**
+     * Ersetzt das Bild durch ein neues der Groesse newWidth x newHeight mit
+     * den Farbwerten aus channels. Farbwerte ausserhalb von [0,1] werden wie
+     * in setPixel an den Randwert angepasst. Enthaelt channels einen
+     * Alphakanal, sind die Grundfarben mit ihm multipliziert und werden vor
+     * dem Schreiben wieder durch ihn geteilt. Besteht channels nur aus einem
+     * Feld, sind das Grauwerte.
+     */
+    private void writeChannels(double[][] channels, int newWidth, int newHeight) {
+        if (outputType == 0 && !RasterAccess.isGray(img)
+                && RasterAccess.isHighDepth(img)) {
+            writeComponents(channels, newWidth, newHeight);
+            return;
+        }
+        boolean gray = channels.length == 1;
+        boolean hasAlpha = channels.length > ALPHA;
+        this.img = new BufferedImage(newWidth, newHeight,
+                outputType(hasAlpha));
+        boolean opaque = !img.getColorModel().hasAlpha();
+        shared = false;
+        pyramid = null;
+        width = newWidth;
+        height = newHeight;
+
+        if (RasterAccess.isGray(img)) {
+            writeGray(channels);
+            return;
+        }
+        int[] row = new int[newWidth];
+        for (int y = 0; y < newHeight; y++) {
+            for (int x = 0; x < newWidth; x++) {
+                int i = y * newWidth + x;
+                if (gray) {
+                    row[x] = 0xFF000000 | encode(channels[0][i]) * 0x010101;
+                } else if (hasAlpha) {
+                    int alpha = toByte(channels[ALPHA][i]);
+                    if (alpha == 0) {
+                        row[x] = opaque ? 0xFF000000 : 0;
+                        continue;
+                    }
+                    double factor = 255. / alpha;
+                    row[x] = ((opaque ? 0xFF : alpha) << 24)
+                            | (encode(channels[RED][i] * factor) << 16)
+                            | (encode(channels[GREEN][i] * factor) << 8)
+                            | encode(channels[BLUE][i] * factor);
+                } else {
+                    row[x] = 0xFF000000 | (encode(channels[RED][i]) << 16)
+                            | (encode(channels[GREEN][i]) << 8)
+                            | encode(channels[BLUE][i]);
+                }
+            }
+            RasterAccess.writeRow(img, y, row);
+        }
+    }
+
+    /**
+     * Schreibt channels in das Graustufenbild img mit dessen Bittiefe. Bei
+     * Farben wird die Helligkeit nach ITU-R BT.601 geschrieben.
+     */
+    private void writeGray(double[][] channels) {
+        int max = (1 << img.getSampleModel().getSampleSize(0)) - 1;
+        boolean hasAlpha = channels.length > ALPHA;
+        int[] samples = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                double v;
+                if (channels.length == 1) {
+                    v = channels[0][i];
+                } else {
+                    v = 0.299 * channels[RED][i] + 0.587 * channels[GREEN][i]
+                            + 0.114 * channels[BLUE][i];
+                    if (hasAlpha)
+                        v = channels[ALPHA][i] > 0 ? v / channels[ALPHA][i] : 0;
+                }
+                samples[x] = encode(v, max);
+            }
+            RasterAccess.writeSamples(img, y, samples);
+        }
+    }
+
+    /**
+     * Bildtyp fuer das Ergebnis von scale, siehe setOutputType. Muss vor dem
+     * Ersetzen von img aufgerufen werden.
+     */
+    private int outputType(boolean hasAlpha) {
+        if (outputType != 0)
+            return outputType;
+        if (hasAlpha)
+            return BufferedImage.TYPE_INT_ARGB;
+        switch (img.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_USHORT_GRAY:
+                return img.getType();
             default:
-                return;
+                if (RasterAccess.isGray(img))
+                    return img.getSampleModel().getSampleSize(0) > 8
+                            ? BufferedImage.TYPE_USHORT_GRAY
+                            : BufferedImage.TYPE_BYTE_GRAY;
+                return BufferedImage.TYPE_INT_RGB;
         }
+    }
+
+    /**
+     * Wandelt einen Abtastwert zwischen 0 und max in den Wert um, mit dem
+     * interpoliert wird
+     */
+    private double decode(int c, int max) {
+        if (max == 255)
+            return decode(c);
+        double v = (double) c / max;
+        return linearLight ? SRGB.decode(v) : v;
+    }
+
+    /**
+     * Gegenstueck zu decode(int, int), Werte ausserhalb von [0,1] werden an
+     * den Randwert angepasst
+     */
+    private int encode(double c, int max) {
+        if (max == 255)
+            return encode(c);
+        if (c < 0)
+            c = 0;
+        if (c > 1)
+            c = 1;
+        if (linearLight)
+            c = SRGB.encode(c);
+        return (int) Math.round(c * max);
+    }
+
+    /**
+     * Wandelt eine 8-Bit-Farbstufe in den Wert um, mit dem interpoliert wird
+     */
+    private double decode(int c) {
+        if (linearLight)
+            return SRGB.toLinear(c);
+        return c / 255.;
+    }
+
+    /**
+     * Wandelt einen interpolierten Wert zurueck in eine 8-Bit-Farbstufe
+     */
+    private int encode(double c) {
+        if (linearLight)
+            return SRGB.fromLinear(c);
+        return toByte(c);
+    }
+
+    /**
+     * Rundet einen Farbwert aus [0,1] auf den Bereich 0 bis 255
+     */
+    private static int toByte(double c) {
+        if (c < 0)
+            c = 0;
+        if (c > 1)
+            c = 1;
+        return (int) Math.round(c * 255.);
+    }
+
+    /**
+     * Skaliert die Farbkanaele channels mit vorberechneten Gewichtstabellen.
+     * Die Gewichte haengen nur von den Bildmassen ab und werden daher einmal
+     * je Richtung fuer alle Zeilen, Spalten und Farben gemeinsam berechnet.
+     * channels enthaelt nur den Ausschnitt region, in dem alle von den
+     * Gewichten verwendeten Pixel liegen.
+     */
+    private double[][] scaleWithWeights(double[][] channels, Rectangle region,
+                                        ResampleWeights horizontal,
+                                        ResampleWeights vertical,
+                                        ScaleMetrics.Sample sample) {
+        int newWidth = horizontal.length;
+        int newHeight = vertical.length;
+        double[][] result = new double[channels.length][];
+        double[] temp = new double[newWidth * region.height];
+        for (int c = 0; c < channels.length; c++) {
+            /* Zeilen in x-Richtung umtasten */
+            for (int y = 0; y < region.height; y++) {
+                horizontal.apply(channels[c], y * region.width - region.x, 1,
+                        temp, y * newWidth, 1);
+            }
+            /* anschliessend die Spalten in y-Richtung */
+            result[c] = new double[newWidth * newHeight];
+            vertical.applyColumns(temp, newWidth, region.y, result[c]);
+        }
+        sample.endPhase(ScaleMetrics.EVALUATE);
+        return result;
+    }
+
+    /**
+     * Skaliert die Farbkanaele channels, indem fuer jede Zeile und Spalte das
+     * Interpolationsverfahren interpolation neu aufgebaut und ausgewertet wird.
+     * Die Zeit fuer init und evaluate wird getrennt in sample gemessen.
+     * channels enthaelt die sourceWidth x sourceHeight Pixel des
+     * Ausschnitts, ausgewertet werden nur die Stellen in target.
+     */
+    private double[][] scaleWithInterpolation(double[][] channels,
+                                              int sourceWidth, int sourceHeight,
+                                              int newWidth, int newHeight,
+                                              Rectangle target,
+                                              InterpolationMethod interpolation,
+                                              ScaleMetrics.Sample sample) {
+
+		/* Tatsaechlicher Skalierungsfaktor in x- und y-Richtung */
+        double scale_x = (double) newWidth / sourceWidth;
+        double scale_y = (double) newHeight / sourceHeight;
 
         /*******************************************************/
         /**
@@ -230,31 +1048,56 @@ public class Picture {
 
 		/*
          * temporaeres Array fuer Zwischenspeicherung von Auswertungen nach dem
-		 * Festhalten der y-Achse. Enthaelt die Farbwerte fuer alle drei
-		 * Grundfarben an den Stellen mit den x-Koordinaten der neuen Pixel und
-		 * den y-Koordinaten der Pixel im alten Bild.
+		 * Festhalten der y-Achse. Enthaelt je Grundfarbe die Farbwerte an den
+		 * Stellen mit den x-Koordinaten der neuen Pixel und den y-Koordinaten
+		 * der Pixel im alten Bild, aber nur fuer die Spalten in target.
+		 */
+        int targetWidth = target.width, targetHeight = target.height;
+        double tempImageArray[][] = new double[channels.length][targetWidth * sourceHeight];
+
+		/*
+		 * Das Newton-Polynom wird an allen Stellen einer Zeile bzw. Spalte auf
+		 * einmal ausgewertet, die Stellen sind fuer alle gleich
 		 */
-        double tempImageArray[][][] = new double[newWidth][height][3];
+        NewtonPolynom newton = interpolation instanceof NewtonPolynom
+                ? (NewtonPolynom) interpolation : null;
+        double[] columns = new double[targetWidth];
+        double[] rows = new double[targetHeight];
+        for (int x = 1; x <= targetWidth; x++) {
+            columns[x - 1] = target.x + x;
+        }
+        for (int y = 1; y <= targetHeight; y++) {
+            rows[y - 1] = target.y + y;
+        }
+        double[] values = new double[Math.max(targetWidth, targetHeight)];
 
 		/* Aequidistante Intervall der Stuetzstellen relativ zum neuen Bild */
         double a = (1 - 0.5) * scale_x + 0.5;
-        double b = (width - 0.5) * scale_x + 0.5;
-        int n = width - 1;
+        double b = (sourceWidth - 0.5) * scale_x + 0.5;
+        int n = sourceWidth - 1;
 
 		/* Fuer jede Zeile */
-        for (int y = 1; y <= height; y++) {
+        for (int y = 1; y <= sourceHeight; y++) {
 			/* Fuer jeden Farbwert des RGB */
-            for (int c = 0; c < 3; c++) {
+            for (int c = 0; c < channels.length; c++) {
 				/* Stuetzwerte setzten */
-                double[] dataPoints = new double[width];
-                for (int x = 1; x <= width; x++) {
-                    dataPoints[x - 1] = getPixel(x, y, c);
-                }
+                double[] dataPoints = new double[sourceWidth];
+                System.arraycopy(channels[c], (y - 1) * sourceWidth, dataPoints,
+                        0, sourceWidth);
 				/* Interpolationsmethode initialisieren */
+                sample.endPhase(ScaleMetrics.EVALUATE);
                 interpolation.init(a, b, n, dataPoints);
+                sample.endPhase(ScaleMetrics.INIT);
 				/* Interpolation auswerten an neuen Stellen */
-                for (int x = 1; x <= newWidth; x++) {
-                    tempImageArray[x - 1][y - 1][c] = interpolation.evaluate(x);
+                if (newton != null) {
+                    newton.evaluate(columns, values);
+                    System.arraycopy(values, 0, tempImageArray[c],
+                            (y - 1) * targetWidth, targetWidth);
+                    continue;
+                }
+                for (int x = 1; x <= targetWidth; x++) {
+                    tempImageArray[c][(y - 1) * targetWidth + x - 1] = interpolation
+                            .evaluate(target.x + x);
                 }
             }
         }
@@ -270,55 +1113,46 @@ public class Picture {
          */
 
 		/*
-		 * Das Array resultImageArray enthaelt alle Auswertungen fuer alle drei
-		 * Grundfarben an den Pixelstellen des neuen Bildes
+		 * Das Array resultImageArray enthaelt alle Auswertungen fuer alle
+		 * Kanaele an den Pixelstellen des neuen Bildes in target
 		 */
-        double resultImageArray[][][] = new double[newWidth][newHeight][3];
+        double resultImageArray[][] = new double[channels.length][targetWidth * targetHeight];
 
 		/* Aequidistante Intervall der Stuetzstellen im neuen Bild */
         a = (1 - 0.5) * scale_y + 0.5;
-        b = (height - 0.5) * scale_y + 0.5;
-        n = height - 1;
+        b = (sourceHeight - 0.5) * scale_y + 0.5;
+        n = sourceHeight - 1;
 
 		/* Fuer jede Spalte */
-        for (int x = 1; x <= newWidth; x++) {
+        for (int x = 1; x <= targetWidth; x++) {
 			/* Fuer jeden Farbwert des RGB */
-            for (int c = 0; c < 3; c++) {
+            for (int c = 0; c < channels.length; c++) {
 				/* Stuetzwerte setzten */
-                double[] dataPoints = new double[height];
-                for (int y = 1; y <= height; y++) {
-                    dataPoints[y - 1] = tempImageArray[x - 1][y - 1][c];
+                double[] dataPoints = new double[sourceHeight];
+                for (int y = 1; y <= sourceHeight; y++) {
+                    dataPoints[y - 1] = tempImageArray[c][(y - 1) * targetWidth + x - 1];
                 }
 				/* Interpolation initialisieren */
+                sample.endPhase(ScaleMetrics.EVALUATE);
                 interpolation.init(a, b, n, dataPoints);
+                sample.endPhase(ScaleMetrics.INIT);
 				/* Interpolation auswerten an neuen Stellen */
-                for (int y = 1; y <= newHeight; y++) {
-                    resultImageArray[x - 1][y - 1][c] = interpolation
-                            .evaluate(y);
+                if (newton != null) {
+                    newton.evaluate(rows, values);
+                    for (int y = 1; y <= targetHeight; y++) {
+                        resultImageArray[c][(y - 1) * targetWidth + x - 1] = values[y - 1];
+                    }
+                    continue;
+                }
+                for (int y = 1; y <= targetHeight; y++) {
+                    resultImageArray[c][(y - 1) * targetWidth + x - 1] = interpolation
+                            .evaluate(target.y + y);
                 }
             }
         }
 
-        /*******************************************************/
-        /**
-         * Jetzt wird mit allen Auswertungen aus resultImageArray das neue Bild
-         * gesetzt
-         */
-        this.img = new BufferedImage(newWidth, newHeight,
-                BufferedImage.TYPE_INT_ARGB);
-        this.img.createGraphics();
-        width = newWidth;
-        height = newHeight;
-
-        for (int x = 1; x <= newWidth; x++) {
-            for (int y = 1; y <= newHeight; y++) {
-                double red = resultImageArray[x - 1][y - 1][0];
-                double green = resultImageArray[x - 1][y - 1][1];
-                double blue = resultImageArray[x - 1][y - 1][2];
-
-                this.setPixel(x, y, red, green, blue);
-            }
-        }
-
+        sample.endPhase(ScaleMetrics.EVALUATE);
+        sample.addFits((long) channels.length * (sourceHeight + targetWidth));
+        return resultImageArray;
     }
 }
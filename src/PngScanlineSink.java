@@ -0,0 +1,145 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Schreibt ein PNG-Bild (8 Bit je Kanal, RGB oder RGBA) zeilenweise. Die
+ * komprimierten Daten werden in IDAT-Chunks von hoechstens CHUNK_SIZE Bytes
+ * ausgegeben, sobald sie anfallen.
+ */
+public class PngScanlineSink implements ScanlineSink {
+
+    /**
+     * maximale Groesse eines IDAT-Chunks
+     */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    private final DataOutputStream out;
+    private final boolean alpha;
+    private final Deflater deflater;
+    private final DeflaterOutputStream pixels;
+
+    /**
+     * die aktuelle Zeile, mit Sub-Filter kodiert
+     */
+    private final byte[] line;
+
+    public PngScanlineSink(OutputStream stream, int width, int height,
+                           boolean alpha) throws IOException {
+        this(stream, width, height, alpha, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level Kompressionsstufe des Deflaters von 0 bis 9
+     */
+    public PngScanlineSink(OutputStream stream, int width, int height,
+                           boolean alpha, int level) throws IOException {
+        out = new DataOutputStream(stream);
+        this.alpha = alpha;
+        line = new byte[1 + width * (alpha ? 4 : 3)];
+        line[0] = 1; /* Sub-Filter */
+
+        out.write(new byte[]{(byte) 137, 80, 78, 71, 13, 10, 26, 10});
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(header);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeByte(8);
+        data.writeByte(alpha ? 6 : 2);
+        data.writeByte(0);
+        data.writeByte(0);
+        data.writeByte(0);
+        writeChunk("IHDR", header.toByteArray(), header.size());
+
+        deflater = new Deflater(level);
+        pixels = new DeflaterOutputStream(new ImageDataStream(), deflater,
+                CHUNK_SIZE);
+    }
+
+    private void writeChunk(String type, byte[] data, int length)
+            throws IOException {
+        byte[] name = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(name);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    @Override
+    public void writeRow(int[] row) throws IOException {
+        int bpp = alpha ? 4 : 3;
+        int width = (line.length - 1) / bpp;
+        int pr = 0, pg = 0, pb = 0, pa = 0;
+        for (int x = 0; x < width; x++) {
+            int argb = row[x];
+            int r = (argb >> 16) & 0xFF, g = (argb >> 8) & 0xFF, b = argb & 0xFF;
+            int i = 1 + x * bpp;
+            line[i] = (byte) (r - pr);
+            line[i + 1] = (byte) (g - pg);
+            line[i + 2] = (byte) (b - pb);
+            pr = r;
+            pg = g;
+            pb = b;
+            if (alpha) {
+                int a = argb >>> 24;
+                line[i + 3] = (byte) (a - pa);
+                pa = a;
+            }
+        }
+        pixels.write(line);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        pixels.finish();
+        pixels.flush();
+        deflater.end();
+        writeChunk("IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    /**
+     * Verpackt die komprimierten Daten in IDAT-Chunks
+     */
+    private class ImageDataStream extends OutputStream {
+
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int size;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (size == buffer.length)
+                flush();
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (size == buffer.length)
+                    flush();
+                int n = Math.min(len, buffer.length - size);
+                System.arraycopy(b, off, buffer, size, n);
+                size += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (size > 0) {
+                writeChunk("IDAT", buffer, size);
+                size = 0;
+            }
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,433 @@
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Liest ein PNG-Bild zeilenweise direkt aus dem komprimierten Datenstrom.
+ * Es werden immer nur die aktuelle und die vorherige gefilterte Zeile
+ * gehalten. Unterstuetzt werden alle Farbtypen und Bittiefen ohne
+ * Interlacing. Die Pruefsumme jedes gelesenen Chunks wird kontrolliert, bei
+ * einer Abweichung wird eine IOException geworfen.
+ */
+public class PngScanlineSource implements ScanlineSource {
+
+    private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10,
+            26, 10};
+
+    private static final int GRAY = 0;
+    private static final int RGB = 2;
+    private static final int PALETTE = 3;
+    private static final int GRAY_ALPHA = 4;
+    private static final int RGB_ALPHA = 6;
+
+    private final DataInputStream in;
+    private final ImageDataStream imageData;
+    private final InputStream pixels;
+
+    /**
+     * Pruefsumme ueber Typ und Daten des aktuellen Chunks
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Anzahl der bereits gelesenen Zeilen
+     */
+    private int rowsRead;
+
+    private int width, height, bitDepth, colorType;
+
+    /**
+     * Palette als ARGB-Werte bei Farbtyp PALETTE
+     */
+    private int[] palette;
+
+    /**
+     * transparente Farbe aus tRNS bei Farbtyp GRAY bzw. RGB, sonst -1
+     */
+    private int transparentGray = -1, transparentRed = -1,
+            transparentGreen = -1, transparentBlue = -1;
+
+    /**
+     * Anzahl an Bytes eines Pixels fuer die Filter, mindestens 1
+     */
+    private int filterOffset;
+
+    private byte[] current, previous;
+
+    /**
+     * Prueft an Hand von Signatur und Kopf, ob der Strom ein PNG-Bild ohne
+     * Interlacing enthaelt. Der Strom muss mark() unterstuetzen und steht
+     * danach wieder am Anfang.
+     */
+    public static boolean canRead(InputStream in) throws IOException {
+        in.mark(29);
+        try {
+            DataInputStream data = new DataInputStream(in);
+            byte[] header = new byte[29];
+            data.readFully(header);
+            for (int i = 0; i < SIGNATURE.length; i++) {
+                if (header[i] != SIGNATURE[i])
+                    return false;
+            }
+            return header[12] == 'I' && header[13] == 'H' && header[14] == 'D'
+                    && header[15] == 'R' && header[28] == 0;
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            in.reset();
+        }
+    }
+
+    public PngScanlineSource(InputStream stream) throws IOException {
+        in = new DataInputStream(stream);
+        byte[] signature = new byte[SIGNATURE.length];
+        in.readFully(signature);
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (signature[i] != SIGNATURE[i])
+                throw new IOException("Keine PNG-Datei");
+        }
+
+        /* Chunks bis zum ersten IDAT lesen */
+        int length;
+        while (true) {
+            length = in.readInt();
+            String type = readType();
+            if (type.equals("IDAT"))
+                break;
+            byte[] data = new byte[length];
+            in.readFully(data);
+            crc.update(data);
+            checkCrc(type);
+            if (type.equals("IHDR"))
+                readHeader(data);
+            else if (type.equals("PLTE"))
+                readPalette(data);
+            else if (type.equals("tRNS"))
+                readTransparency(data);
+            else if (type.equals("IEND"))
+                throw new IOException("PNG-Datei ohne Bilddaten");
+        }
+
+        int channels;
+        switch (colorType) {
+            case GRAY:
+            case PALETTE:
+                channels = 1;
+                break;
+            case GRAY_ALPHA:
+                channels = 2;
+                break;
+            case RGB:
+                channels = 3;
+                break;
+            default:
+                channels = 4;
+        }
+        int bitsPerPixel = channels * bitDepth;
+        filterOffset = Math.max(1, bitsPerPixel / 8);
+        int rowBytes = (width * bitsPerPixel + 7) / 8;
+        current = new byte[rowBytes];
+        previous = new byte[rowBytes];
+        imageData = new ImageDataStream(length);
+        pixels = new InflaterInputStream(imageData);
+    }
+
+    /**
+     * Liest den Typ eines Chunks und beginnt damit dessen Pruefsumme
+     */
+    private String readType() throws IOException {
+        byte[] type = new byte[4];
+        in.readFully(type);
+        crc.reset();
+        crc.update(type);
+        return new String(type, "US-ASCII");
+    }
+
+    /**
+     * Liest die Pruefsumme des Chunks type und vergleicht sie mit der
+     * berechneten
+     */
+    private void checkCrc(String type) throws IOException {
+        if (in.readInt() != (int) crc.getValue())
+            throw new IOException("Pruefsumme des PNG-Chunks " + type
+                    + " stimmt nicht");
+    }
+
+    private void readHeader(byte[] data) throws IOException {
+        width = readInt(data, 0);
+        height = readInt(data, 4);
+        bitDepth = data[8];
+        colorType = data[9];
+        if (data[12] != 0)
+            throw new IOException("PNG mit Interlacing wird nicht unterstuetzt");
+    }
+
+    private void readPalette(byte[] data) {
+        palette = new int[data.length / 3];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = 0xFF000000 | ((data[3 * i] & 0xFF) << 16)
+                    | ((data[3 * i + 1] & 0xFF) << 8) | (data[3 * i + 2] & 0xFF);
+        }
+    }
+
+    private void readTransparency(byte[] data) {
+        if (colorType == PALETTE && palette != null) {
+            for (int i = 0; i < data.length && i < palette.length; i++) {
+                palette[i] = (palette[i] & 0xFFFFFF) | ((data[i] & 0xFF) << 24);
+            }
+        } else if (colorType == GRAY && data.length >= 2) {
+            transparentGray = readShort(data, 0);
+        } else if (colorType == RGB && data.length >= 6) {
+            transparentRed = readShort(data, 0);
+            transparentGreen = readShort(data, 2);
+            transparentBlue = readShort(data, 4);
+        }
+    }
+
+    private static int readInt(byte[] data, int i) {
+        return ((data[i] & 0xFF) << 24) | ((data[i + 1] & 0xFF) << 16)
+                | ((data[i + 2] & 0xFF) << 8) | (data[i + 3] & 0xFF);
+    }
+
+    private static int readShort(byte[] data, int i) {
+        return ((data[i] & 0xFF) << 8) | (data[i + 1] & 0xFF);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean hasAlpha() {
+        return colorType == GRAY_ALPHA || colorType == RGB_ALPHA
+                || transparentGray >= 0 || transparentRed >= 0
+                || (colorType == PALETTE && palette != null && hasPaletteAlpha());
+    }
+
+    private boolean hasPaletteAlpha() {
+        for (int argb : palette) {
+            if ((argb >>> 24) != 0xFF)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void readRow(int[] row) throws IOException {
+        byte[] swap = previous;
+        previous = current;
+        current = swap;
+
+        int filter = pixels.read();
+        if (filter < 0)
+            throw new EOFException("PNG-Bilddaten zu kurz");
+        readFully(current);
+        unfilter(filter);
+
+        for (int x = 0; x < width; x++) {
+            row[x] = toARGB(x);
+        }
+        /*
+         * nach der letzten Zeile die restlichen Bilddaten ueberspringen,
+         * damit auch die Pruefsumme des letzten IDAT-Chunks kontrolliert wird
+         */
+        if (++rowsRead == height)
+            imageData.skipToEnd();
+    }
+
+    private void readFully(byte[] buffer) throws IOException {
+        int off = 0;
+        while (off < buffer.length) {
+            int read = pixels.read(buffer, off, buffer.length - off);
+            if (read < 0)
+                throw new EOFException("PNG-Bilddaten zu kurz");
+            off += read;
+        }
+    }
+
+    /**
+     * Macht den Zeilenfilter filter auf current mit Hilfe der vorherigen
+     * Zeile previous rueckgaengig
+     */
+    private void unfilter(int filter) throws IOException {
+        int n = current.length;
+        switch (filter) {
+            case 0:
+                break;
+            case 1:
+                for (int i = filterOffset; i < n; i++)
+                    current[i] += current[i - filterOffset];
+                break;
+            case 2:
+                for (int i = 0; i < n; i++)
+                    current[i] += previous[i];
+                break;
+            case 3:
+                for (int i = 0; i < n; i++) {
+                    int left = i >= filterOffset ? current[i - filterOffset] & 0xFF : 0;
+                    current[i] += (left + (previous[i] & 0xFF)) >> 1;
+                }
+                break;
+            case 4:
+                for (int i = 0; i < n; i++) {
+                    int left = i >= filterOffset ? current[i - filterOffset] & 0xFF : 0;
+                    int up = previous[i] & 0xFF;
+                    int upLeft = i >= filterOffset ? previous[i - filterOffset] & 0xFF : 0;
+                    current[i] += paeth(left, up, upLeft);
+                }
+                break;
+            default:
+                throw new IOException("Unbekannter PNG-Filter " + filter);
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc)
+            return a;
+        if (pb <= pc)
+            return b;
+        return c;
+    }
+
+    /**
+     * Gibt den Abtastwert Nummer i der aktuellen Zeile in voller Bittiefe
+     * zurueck
+     */
+    private int sample(int i) {
+        switch (bitDepth) {
+            case 16:
+                return ((current[2 * i] & 0xFF) << 8) | (current[2 * i + 1] & 0xFF);
+            case 8:
+                return current[i] & 0xFF;
+            default:
+                int bit = i * bitDepth;
+                int shift = 8 - bitDepth - (bit & 7);
+                return ((current[bit >> 3] & 0xFF) >> shift) & ((1 << bitDepth) - 1);
+        }
+    }
+
+    /**
+     * Skaliert einen Abtastwert auf 8 Bit. 16-Bit-Werte werden wie in
+     * RasterAccess gerundet, damit das Ergebnis mit Picture uebereinstimmt.
+     */
+    private int to8Bit(int sample) {
+        if (bitDepth == 16)
+            return (sample * 255 + 32767) / 65535;
+        if (bitDepth == 8)
+            return sample;
+        return sample * 255 / ((1 << bitDepth) - 1);
+    }
+
+    private int toARGB(int x) {
+        switch (colorType) {
+            case GRAY: {
+                int s = sample(x);
+                int g = to8Bit(s);
+                int alpha = s == transparentGray ? 0 : 0xFF;
+                return (alpha << 24) | (g << 16) | (g << 8) | g;
+            }
+            case PALETTE: {
+                int i = sample(x);
+                return i < palette.length ? palette[i] : 0xFF000000;
+            }
+            case GRAY_ALPHA: {
+                int g = to8Bit(sample(2 * x));
+                return (to8Bit(sample(2 * x + 1)) << 24) | (g << 16) | (g << 8) | g;
+            }
+            case RGB: {
+                int r = sample(3 * x), g = sample(3 * x + 1), b = sample(3 * x + 2);
+                int alpha = r == transparentRed && g == transparentGreen
+                        && b == transparentBlue ? 0 : 0xFF;
+                return (alpha << 24) | (to8Bit(r) << 16) | (to8Bit(g) << 8)
+                        | to8Bit(b);
+            }
+            default:
+                return (to8Bit(sample(4 * x + 3)) << 24)
+                        | (to8Bit(sample(4 * x)) << 16)
+                        | (to8Bit(sample(4 * x + 1)) << 8) | to8Bit(sample(4 * x + 2));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Fuegt die Inhalte aufeinanderfolgender IDAT-Chunks zu einem Strom
+     * zusammen, waehrend sie gelesen werden
+     */
+    private class ImageDataStream extends InputStream {
+
+        /**
+         * noch nicht gelesene Bytes im aktuellen IDAT-Chunk
+         */
+        private int remaining;
+
+        private boolean finished;
+
+        ImageDataStream(int length) {
+            remaining = length;
+        }
+
+        private boolean nextChunk() throws IOException {
+            while (remaining == 0 && !finished) {
+                checkCrc("IDAT");
+                int length = in.readInt();
+                if (readType().equals("IDAT")) {
+                    remaining = length;
+                } else {
+                    finished = true;
+                }
+            }
+            return !finished;
+        }
+
+        /**
+         * Ueberliest alle noch nicht gelesenen Bilddaten bis zum ersten
+         * Chunk nach den IDAT-Chunks
+         */
+        void skipToEnd() throws IOException {
+            byte[] buffer = new byte[4096];
+            while (read(buffer, 0, buffer.length) >= 0) {
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk())
+                return -1;
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException("PNG-Datei zu kurz");
+            remaining--;
+            crc.update(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!nextChunk())
+                return -1;
+            int read = in.read(b, off, Math.min(len, remaining));
+            if (read < 0)
+                throw new EOFException("PNG-Datei zu kurz");
+            remaining -= read;
+            crc.update(b, off, read);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Kern der Polynominterpolation. Das Newton-Polynom ist ein globales
+ * Verfahren und besitzt daher keine Gewichtstabelle.
+ */
+public class PolynomialKernel implements InterpolationKernel {
+
+    @Override
+    public String getName() {
+        return "poly";
+    }
+
+    @Override
+    public double getSupport() {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public boolean isSeparable() {
+        return true;
+    }
+
+    @Override
+    public boolean hasWeightTable() {
+        return false;
+    }
+
+    @Override
+    public double weight(double t) {
+        throw new UnsupportedOperationException(
+                "Polynominterpolation hat keinen lokalen Kern");
+    }
+
+    @Override
+    public InterpolationMethod createInterpolation() {
+        return new NewtonPolynom();
+    }
+}
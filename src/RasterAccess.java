@@ -0,0 +1,412 @@
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.IndexColorModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Zeilenweiser Zugriff auf die Pixel eines BufferedImage als ARGB-Werte. Fuer
+ * die haeufigen Formate TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_3BYTE_BGR,
+ * TYPE_4BYTE_ABGR, TYPE_BYTE_GRAY und TYPE_USHORT_GRAY wird direkt auf das
+ * Feld hinter dem Raster zugegriffen, ohne den Umweg ueber das ColorModel in
+ * getRGB/setRGB. Alle anderen Formate werden ueber getRGB/setRGB bearbeitet.
+ * <p/>
+ * Grauwerte werden wie in den Bilddateien als sRGB-kodiert behandelt, also
+ * unveraendert in alle drei Grundfarben uebernommen. getRGB wuerde sie
+ * dagegen als lineare Werte auffassen und aufhellen. Beim Schreiben wird die
+ * Helligkeit nach ITU-R BT.601 gebildet.
+ */
+class RasterAccess {
+
+    private RasterAccess() {
+    }
+
+    /**
+     * Gibt an, ob das Raster von img ohne Versatz und ohne Elternraster in
+     * einem einzigen Feld liegt und damit direkt bearbeitet werden kann
+     */
+    static boolean isDirect(BufferedImage img) {
+        switch (img.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_USHORT_GRAY:
+                break;
+            default:
+                return false;
+        }
+        WritableRaster raster = img.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        return raster.getParent() == null
+                && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && buffer.getNumBanks() == 1 && buffer.getOffset() == 0;
+    }
+
+    /**
+     * Liest die Zeile y (ab 0 gezaehlt) von img als nicht vormultiplizierte
+     * ARGB-Werte nach row und gibt row zurueck
+     */
+    static int[] readRow(BufferedImage img, int y, int[] row) {
+        return readRow(img, 0, y, img.getWidth(), row);
+    }
+
+    /**
+     * Liest width Pixel der Zeile y ab der Spalte x0 (beide ab 0 gezaehlt)
+     * als nicht vormultiplizierte ARGB-Werte nach row und gibt row zurueck
+     */
+    static int[] readRow(BufferedImage img, int x0, int y, int width,
+                         int[] row) {
+        if (!isDirect(img))
+            return img.getRGB(x0, y, width, 1, row, 0, width);
+
+        WritableRaster raster = img.getRaster();
+        switch (img.getType()) {
+            case BufferedImage.TYPE_INT_RGB: {
+                int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+                int offset = y * ((SinglePixelPackedSampleModel) raster
+                        .getSampleModel()).getScanlineStride() + x0;
+                for (int x = 0; x < width; x++) {
+                    row[x] = 0xFF000000 | data[offset + x];
+                }
+                return row;
+            }
+            case BufferedImage.TYPE_INT_ARGB: {
+                int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+                int offset = y * ((SinglePixelPackedSampleModel) raster
+                        .getSampleModel()).getScanlineStride() + x0;
+                System.arraycopy(data, offset, row, 0, width);
+                return row;
+            }
+            case BufferedImage.TYPE_BYTE_GRAY: {
+                byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                int offset = y * ((ComponentSampleModel) raster
+                        .getSampleModel()).getScanlineStride() + x0;
+                for (int x = 0; x < width; x++) {
+                    row[x] = 0xFF000000 | (data[offset + x] & 0xFF) * 0x010101;
+                }
+                return row;
+            }
+            case BufferedImage.TYPE_USHORT_GRAY: {
+                short[] data = ((DataBufferUShort) raster.getDataBuffer())
+                        .getData();
+                int offset = y * ((ComponentSampleModel) raster
+                        .getSampleModel()).getScanlineStride() + x0;
+                for (int x = 0; x < width; x++) {
+                    int g = ((data[offset + x] & 0xFFFF) * 255 + 32767) / 65535;
+                    row[x] = 0xFF000000 | g * 0x010101;
+                }
+                return row;
+            }
+            default: {
+                byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                ComponentSampleModel model = (ComponentSampleModel) raster
+                        .getSampleModel();
+                int[] bands = model.getBandOffsets();
+                int pixelStride = model.getPixelStride();
+                int offset = y * model.getScanlineStride() + x0 * pixelStride;
+                boolean alpha = bands.length > 3;
+                for (int x = 0; x < width; x++) {
+                    int i = offset + x * pixelStride;
+                    row[x] = (alpha ? (data[i + bands[3]] & 0xFF) << 24
+                            : 0xFF000000)
+                            | ((data[i + bands[0]] & 0xFF) << 16)
+                            | ((data[i + bands[1]] & 0xFF) << 8)
+                            | (data[i + bands[2]] & 0xFF);
+                }
+                return row;
+            }
+        }
+    }
+
+    /**
+     * Schreibt die nicht vormultiplizierten ARGB-Werte aus row in die Zeile y
+     * (ab 0 gezaehlt) von img
+     */
+    static void writeRow(BufferedImage img, int y, int[] row) {
+        int width = img.getWidth();
+        if (!isDirect(img)) {
+            img.setRGB(0, y, width, 1, row, 0, width);
+            return;
+        }
+
+        WritableRaster raster = img.getRaster();
+        switch (img.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB: {
+                int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+                int offset = y * ((SinglePixelPackedSampleModel) raster
+                        .getSampleModel()).getScanlineStride();
+                System.arraycopy(row, 0, data, offset, width);
+                return;
+            }
+            case BufferedImage.TYPE_BYTE_GRAY: {
+                byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                int offset = y * ((ComponentSampleModel) raster
+                        .getSampleModel()).getScanlineStride();
+                for (int x = 0; x < width; x++) {
+                    data[offset + x] = (byte) luma(row[x]);
+                }
+                return;
+            }
+            case BufferedImage.TYPE_USHORT_GRAY: {
+                short[] data = ((DataBufferUShort) raster.getDataBuffer())
+                        .getData();
+                int offset = y * ((ComponentSampleModel) raster
+                        .getSampleModel()).getScanlineStride();
+                for (int x = 0; x < width; x++) {
+                    data[offset + x] = (short) (luma(row[x]) * 257);
+                }
+                return;
+            }
+            default: {
+                byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                ComponentSampleModel model = (ComponentSampleModel) raster
+                        .getSampleModel();
+                int[] bands = model.getBandOffsets();
+                int pixelStride = model.getPixelStride();
+                int offset = y * model.getScanlineStride();
+                boolean alpha = bands.length > 3;
+                for (int x = 0; x < width; x++) {
+                    int i = offset + x * pixelStride;
+                    int argb = row[x];
+                    data[i + bands[0]] = (byte) (argb >> 16);
+                    data[i + bands[1]] = (byte) (argb >> 8);
+                    data[i + bands[2]] = (byte) argb;
+                    if (alpha)
+                        data[i + bands[3]] = (byte) (argb >>> 24);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gibt an, ob img ein Graustufenbild mit 8 oder 16 Bit in genau einem
+     * Band ohne Alphakanal und ohne Farbpalette ist
+     */
+    static boolean isGray(BufferedImage img) {
+        ColorModel cm = img.getColorModel();
+        int type = cm.getTransferType();
+        return !(cm instanceof IndexColorModel)
+                && (type == DataBuffer.TYPE_BYTE || type == DataBuffer.TYPE_USHORT)
+                && cm.getColorSpace().getType() == ColorSpace.TYPE_GRAY
+                && cm.getNumComponents() == 1
+                && img.getRaster().getNumBands() == 1;
+    }
+
+    /**
+     * Liest width Abtastwerte des einzigen Bands eines Graustufenbilds aus der
+     * Zeile y ab der Spalte x0 nach samples und gibt samples zurueck. Die
+     * Werte liegen zwischen 0 und 2^b - 1 mit der Bittiefe b.
+     */
+    static int[] readSamples(BufferedImage img, int x0, int y, int width,
+                             int[] samples) {
+        WritableRaster raster = img.getRaster();
+        if (isDirect(img)) {
+            int offset = y * ((ComponentSampleModel) raster.getSampleModel())
+                    .getScanlineStride() + x0;
+            if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                byte[] data = ((DataBufferByte) raster.getDataBuffer())
+                        .getData();
+                for (int x = 0; x < width; x++) {
+                    samples[x] = data[offset + x] & 0xFF;
+                }
+            } else {
+                short[] data = ((DataBufferUShort) raster.getDataBuffer())
+                        .getData();
+                for (int x = 0; x < width; x++) {
+                    samples[x] = data[offset + x] & 0xFFFF;
+                }
+            }
+            return samples;
+        }
+        return raster.getSamples(x0, y, width, 1, 0, samples);
+    }
+
+    /**
+     * Schreibt die Abtastwerte aus samples in die Zeile y des einzigen Bands
+     * eines Graustufenbilds
+     */
+    static void writeSamples(BufferedImage img, int y, int[] samples) {
+        WritableRaster raster = img.getRaster();
+        int width = img.getWidth();
+        if (isDirect(img)) {
+            int offset = y * ((ComponentSampleModel) raster.getSampleModel())
+                    .getScanlineStride();
+            if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                byte[] data = ((DataBufferByte) raster.getDataBuffer())
+                        .getData();
+                for (int x = 0; x < width; x++) {
+                    data[offset + x] = (byte) samples[x];
+                }
+            } else {
+                short[] data = ((DataBufferUShort) raster.getDataBuffer())
+                        .getData();
+                for (int x = 0; x < width; x++) {
+                    data[offset + x] = (short) samples[x];
+                }
+            }
+            return;
+        }
+        raster.setSamples(0, y, width, 1, 0, samples);
+    }
+
+    /**
+     * Gibt an, ob img je Band mehr als 8 Bit oder Gleitkommawerte speichert,
+     * und zwar als RGB-Bild mit 3 bzw. 4 Baendern (mit Alphakanal) oder als
+     * Graustufenbild mit einem Band. Solche Bilder werden ueber readBand und
+     * writeBand in voller Genauigkeit bearbeitet.
+     */
+    static boolean isHighDepth(BufferedImage img) {
+        ColorModel cm = img.getColorModel();
+        if (!(cm instanceof ComponentColorModel))
+            return false;
+        switch (cm.getTransferType()) {
+            case DataBuffer.TYPE_USHORT:
+            case DataBuffer.TYPE_INT:
+            case DataBuffer.TYPE_FLOAT:
+            case DataBuffer.TYPE_DOUBLE:
+                break;
+            default:
+                return false;
+        }
+        if (img.getRaster().getNumBands() != cm.getNumComponents())
+            return false;
+        if (cm.getNumColorComponents() == 3)
+            return cm.getColorSpace().getType() == ColorSpace.TYPE_RGB;
+        return cm.getNumColorComponents() == 1 && !cm.hasAlpha();
+    }
+
+    /**
+     * Gibt an, ob img Gleitkommawerte speichert
+     */
+    static boolean isFloatingPoint(BufferedImage img) {
+        int type = img.getColorModel().getTransferType();
+        return type == DataBuffer.TYPE_FLOAT || type == DataBuffer.TYPE_DOUBLE;
+    }
+
+    /**
+     * Groesster Abtastwert im Band band, der dem Wert 1 entspricht. Fuer
+     * Gleitkommawerte ist das 1.
+     */
+    static double maxSample(BufferedImage img, int band) {
+        if (isFloatingPoint(img))
+            return 1;
+        return (1L << img.getSampleModel().getSampleSize(band)) - 1;
+    }
+
+    /**
+     * Liest width Abtastwerte des Bands band aus der Zeile y ab der Spalte x0
+     * nach samples. Fuer verschraenkt abgelegte Raster mit 16 Bit, float oder
+     * double wird direkt auf das Feld zugegriffen.
+     */
+    static double[] readBand(BufferedImage img, int x0, int y, int width,
+                             int band, double[] samples) {
+        WritableRaster raster = img.getRaster();
+        ComponentSampleModel model = interleaved(raster);
+        if (model == null)
+            return raster.getSamples(x0, y, width, 1, band, samples);
+        int stride = model.getPixelStride();
+        int offset = y * model.getScanlineStride() + x0 * stride
+                + model.getBandOffsets()[band];
+        DataBuffer buffer = raster.getDataBuffer();
+        if (buffer instanceof DataBufferUShort) {
+            short[] data = ((DataBufferUShort) buffer).getData();
+            for (int x = 0; x < width; x++) {
+                samples[x] = data[offset + x * stride] & 0xFFFF;
+            }
+        } else if (buffer instanceof DataBufferFloat) {
+            float[] data = ((DataBufferFloat) buffer).getData();
+            for (int x = 0; x < width; x++) {
+                samples[x] = data[offset + x * stride];
+            }
+        } else {
+            double[] data = ((DataBufferDouble) buffer).getData();
+            for (int x = 0; x < width; x++) {
+                samples[x] = data[offset + x * stride];
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Schreibt die Abtastwerte aus samples in das Band band der Zeile y.
+     * Ganzzahlige Werte muessen bereits gerundet und im gueltigen Bereich
+     * sein.
+     */
+    static void writeBand(BufferedImage img, int y, int band, double[] samples) {
+        WritableRaster raster = img.getRaster();
+        int width = img.getWidth();
+        ComponentSampleModel model = interleaved(raster);
+        if (model == null) {
+            raster.setSamples(0, y, width, 1, band, samples);
+            return;
+        }
+        int stride = model.getPixelStride();
+        int offset = y * model.getScanlineStride()
+                + model.getBandOffsets()[band];
+        DataBuffer buffer = raster.getDataBuffer();
+        if (buffer instanceof DataBufferUShort) {
+            short[] data = ((DataBufferUShort) buffer).getData();
+            for (int x = 0; x < width; x++) {
+                data[offset + x * stride] = (short) samples[x];
+            }
+        } else if (buffer instanceof DataBufferFloat) {
+            float[] data = ((DataBufferFloat) buffer).getData();
+            for (int x = 0; x < width; x++) {
+                data[offset + x * stride] = (float) samples[x];
+            }
+        } else {
+            double[] data = ((DataBufferDouble) buffer).getData();
+            for (int x = 0; x < width; x++) {
+                data[offset + x * stride] = samples[x];
+            }
+        }
+    }
+
+    /**
+     * Gibt das SampleModel zurueck, falls alle Baender verschraenkt in einem
+     * einzigen Feld vom Typ ushort, float oder double liegen und das Raster
+     * ohne Versatz ist, sonst null
+     */
+    private static ComponentSampleModel interleaved(WritableRaster raster) {
+        DataBuffer buffer = raster.getDataBuffer();
+        if (!(raster.getSampleModel() instanceof ComponentSampleModel)
+                || raster.getParent() != null
+                || raster.getSampleModelTranslateX() != 0
+                || raster.getSampleModelTranslateY() != 0
+                || buffer.getNumBanks() != 1 || buffer.getOffset() != 0)
+            return null;
+        ComponentSampleModel model = (ComponentSampleModel) raster
+                .getSampleModel();
+        for (int bank : model.getBankIndices()) {
+            if (bank != 0)
+                return null;
+        }
+        if (buffer instanceof DataBufferUShort
+                || buffer instanceof DataBufferFloat
+                || buffer instanceof DataBufferDouble)
+            return model;
+        return null;
+    }
+
+    /**
+     * Helligkeit eines ARGB-Werts nach ITU-R BT.601 auf den kodierten
+     * Farbwerten
+     */
+    static int luma(int argb) {
+        return (77 * ((argb >> 16) & 0xFF) + 150 * ((argb >> 8) & 0xFF) + 29
+                * (argb & 0xFF) + 128) >> 8;
+    }
+}
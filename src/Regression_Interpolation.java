@@ -0,0 +1,236 @@
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Regressionstest fuer Picture.scale: Fuer jeden Interpolationsmodus und
+ * einige Skalierungsfaktoren wird ein Testbild skaliert und mit einem
+ * gespeicherten Referenzbild verglichen. Eine Abweichung gilt als Fehler,
+ * wenn der PSNR unter MIN_PSNR faellt oder ein Farbwert um mehr als MAX_DIFF
+ * abweicht. Kleine Rundungsunterschiede durch umgestellte Rechnungen sind
+ * damit erlaubt, sichtbare Aenderungen nicht.
+ * <p/>
+ * Zusaetzlich wird jeder Fall zweimal berechnet und muss bitgleich sein, und
+ * das Skalieren in zwei Kacheln muss dasselbe Ergebnis wie das Skalieren im
+ * Ganzen liefern.
+ * <p/>
+ * Aufruf: java Regression_Interpolation [record] [-psnr dB] [-maxdiff n]
+ * [Verzeichnis]. Mit record werden die Referenzbilder neu geschrieben, etwa
+ * nach einer gewollten Aenderung der Ergebnisse.
+ */
+public class Regression_Interpolation {
+
+    static final String IMAGES = "src/bilder/";
+
+    /**
+     * Standardverzeichnis der Referenzbilder
+     */
+    static final String GOLDEN = "src/bilder/golden/";
+
+    static final double MIN_PSNR = 50;
+    static final int MAX_DIFF = 2;
+
+    static final double[] FACTORS = {0.5, 1.37, 2};
+
+    /**
+     * Ein Testbild mit den Einstellungen, unter denen es skaliert wird
+     */
+    static class Case {
+        final String name;
+        final String file;
+        final Rectangle region;
+        boolean linearLight;
+        boolean periodic;
+        int outputType;
+        double[] factors = FACTORS;
+
+        Case(String name, String file, Rectangle region) {
+            this.name = name;
+            this.file = file;
+            this.region = region;
+        }
+
+        Picture load() throws IOException {
+            Picture picture = new Picture(IMAGES + file);
+            if (picture.isNull())
+                throw new IOException("Bild " + file + " nicht gefunden");
+            picture.setLinearLight(linearLight);
+            picture.setPeriodic(periodic);
+            picture.setOutputType(outputType);
+            return picture;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean record = false;
+        double minPsnr = MIN_PSNR;
+        int maxDiff = MAX_DIFF;
+        String dir = GOLDEN;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("record"))
+                record = true;
+            else if (args[i].equals("-psnr"))
+                minPsnr = Double.parseDouble(args[++i]);
+            else if (args[i].equals("-maxdiff"))
+                maxDiff = Integer.parseInt(args[++i]);
+            else
+                dir = args[i].endsWith("/") ? args[i] : args[i] + "/";
+        }
+        if (record)
+            new File(dir).mkdirs();
+
+        int failures = 0, count = 0;
+        for (Case c : cases()) {
+            for (int mode = 0; KernelRegistry.get(mode) != null; mode++) {
+                InterpolationKernel kernel = KernelRegistry.get(mode);
+                for (double factor : c.factors) {
+                    String name = c.name + "_" + kernel.getName() + "_x"
+                            + format(factor);
+                    String error = run(c, kernel, factor, dir + name
+                            + ".png", record, minPsnr, maxDiff);
+                    count++;
+                    if (error != null) {
+                        failures++;
+                        System.out.println("FEHLER " + name + ": " + error);
+                    }
+                }
+            }
+        }
+        System.out.println(count + " Faelle, " + failures + " Fehler"
+                + (record ? ", Referenzbilder in " + dir + " geschrieben" : ""));
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Die Testfaelle: ein Ausschnitt eines Fotos, ein Bild mit harten Kanten
+     * und ein sehr kleines Bild fuer die Randbehandlung, dazu einige
+     * Einstellungen von Picture mit nur einem Faktor
+     */
+    static List<Case> cases() {
+        Rectangle crop = new Rectangle(100, 80, 64, 48);
+        List<Case> cases = new ArrayList<Case>();
+        cases.add(new Case("test", "test.bmp", crop));
+        cases.add(new Case("numpro", "numpro.gif", null));
+        cases.add(new Case("3x4", "3x4.gif", null));
+
+        Case linear = new Case("test-linear", "test.bmp", crop);
+        linear.linearLight = true;
+        linear.factors = new double[]{1.37};
+        cases.add(linear);
+        Case periodic = new Case("numpro-periodic", "numpro.gif", null);
+        periodic.periodic = true;
+        periodic.factors = new double[]{1.37};
+        cases.add(periodic);
+        Case gray = new Case("test-gray", "test.bmp", crop);
+        gray.outputType = BufferedImage.TYPE_BYTE_GRAY;
+        gray.factors = new double[]{1.37};
+        cases.add(gray);
+        return cases;
+    }
+
+    /**
+     * Skaliert einen Fall und vergleicht ihn mit dem Referenzbild golden
+     * bzw. schreibt dieses im Modus record
+     *
+     * @return Fehlerbeschreibung oder null
+     */
+    static String run(Case c, InterpolationKernel kernel, double factor,
+                      String golden, boolean record, double minPsnr, int maxDiff)
+            throws IOException {
+        Picture picture = c.load();
+        Rectangle source = c.region != null ? c.region : new Rectangle(0, 0,
+                picture.getWidth(), picture.getHeight());
+        int width = Math.max(1, (int) Math.round(source.width * factor));
+        int height = Math.max(1, (int) Math.round(source.height * factor));
+        picture.scale(source, width, height, kernel);
+        BufferedImage result = picture.getImage();
+
+        Picture again = c.load();
+        again.scale(source, width, height, kernel);
+        if (maxDifference(result, again.getImage()) != 0)
+            return "zweite Berechnung weicht ab";
+
+        /* obere und untere Haelfte einzeln */
+        int half = Math.max(1, height / 2);
+        if (half < height) {
+            Picture top = c.load();
+            top.scale(source, width, height, new Rectangle(0, 0, width, half),
+                    kernel);
+            Picture bottom = c.load();
+            bottom.scale(source, width, height, new Rectangle(0, half, width,
+                    height - half), kernel);
+            if (maxDifference(result.getSubimage(0, 0, width, half),
+                    top.getImage()) != 0
+                    || maxDifference(result.getSubimage(0, half, width,
+                    height - half), bottom.getImage()) != 0)
+                return "Kacheln weichen vom ganzen Bild ab";
+        }
+
+        File file = new File(golden);
+        if (record) {
+            picture.save(golden, "png");
+            return null;
+        }
+        if (!file.exists())
+            return "kein Referenzbild " + golden;
+        BufferedImage expected = ImageIO.read(file);
+        if (expected.getWidth() != width || expected.getHeight() != height)
+            return "Groesse " + width + "x" + height + " statt "
+                    + expected.getWidth() + "x" + expected.getHeight();
+        double psnr = psnr(result, expected);
+        int diff = maxDifference(result, expected);
+        if (psnr < minPsnr || diff > maxDiff)
+            return String.format("PSNR %.2f dB, maximale Abweichung %d", psnr,
+                    diff);
+        return null;
+    }
+
+    /**
+     * Groesste Abweichung eines Farb- oder Alphawerts zweier gleich grosser
+     * Bilder
+     */
+    static int maxDifference(BufferedImage p, BufferedImage q) {
+        if (p.getWidth() != q.getWidth() || p.getHeight() != q.getHeight())
+            return Integer.MAX_VALUE;
+        int max = 0;
+        for (int y = 0; y < p.getHeight(); y++) {
+            for (int x = 0; x < p.getWidth(); x++) {
+                int u = p.getRGB(x, y), v = q.getRGB(x, y);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    max = Math.max(max, Math.abs(((u >> shift) & 0xFF)
+                            - ((v >> shift) & 0xFF)));
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Spitzen-Signal-Rausch-Verhaeltnis in dB ueber alle Farb- und
+     * Alphawerte, unendlich bei gleichen Bildern
+     */
+    static double psnr(BufferedImage p, BufferedImage q) {
+        double sum = 0;
+        for (int y = 0; y < p.getHeight(); y++) {
+            for (int x = 0; x < p.getWidth(); x++) {
+                int u = p.getRGB(x, y), v = q.getRGB(x, y);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    double d = ((u >> shift) & 0xFF) - ((v >> shift) & 0xFF);
+                    sum += d * d;
+                }
+            }
+        }
+        double mse = sum / (4.0 * p.getWidth() * p.getHeight());
+        return 10 * Math.log10(255. * 255. / mse);
+    }
+
+    private static String format(double factor) {
+        return factor == Math.rint(factor) ? String.valueOf((int) factor)
+                : String.valueOf(factor);
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * Gewichtstabelle fuer das Umtasten einer Zeile bzw. Spalte der Laenge
+ * srcLength auf die Laenge dstLength mit einem lokalen Interpolationskern.
+ * Fuer jede neue Stelle i werden einmalig die beteiligten alten Stellen und
+ * ihre Gewichte berechnet, sodass beim Skalieren eines Bildes jede Zeile nur
+ * noch eine gewichtete Summe weniger Stuetzwerte bildet.
+ * <p/>
+ * Die Lage der Stuetzstellen entspricht der in Picture.scale: die neue Stelle
+ * i (ab 0 gezaehlt) liegt an der alten Stelle u = (i + 0.5) / s - 0.5 mit dem
+ * Skalierungsfaktor s. Ausserhalb der alten Stellen wird der Randwert
+ * fortgesetzt, im periodischen Modus die Zeile zyklisch wiederholt (fuer
+ * kachelbare Texturen).
+ * <p/>
+ * Beim Verkleinern um den Faktor f = srcCount / dstLength > 1 wird der Kern
+ * um f gestreckt: Traeger und Anzahl der Gewichte wachsen um f, ausgewertet
+ * wird kernel.weight(t / f). Der Kern wirkt damit als Tiefpass im Abstand der
+ * neuen Stellen, statt nur einzelne alte Stellen abzutasten, und Lanczos,
+ * Catmull-Rom und lineare Interpolation erzeugen keine Alias-Effekte. Nur der
+ * Kern des naechsten Nachbarn wird nicht gestreckt, er waehlt auch beim
+ * Verkleinern einzelne Pixel aus.
+ * <p/>
+ * Es kann auch nur ein Ausschnitt der alten Zeile auf die neue Laenge
+ * umgetastet und davon nur ein Ausschnitt der neuen Zeile berechnet werden.
+ * Die Kernraender ausserhalb des alten Ausschnitts verwenden dann die
+ * tatsaechlichen Nachbarn in der Zeile.
+ */
+public class ResampleWeights {
+
+    /**
+     * Anzahl an Gewichten je neuer Stelle
+     */
+    final int taps;
+
+    /**
+     * Laenge der neuen Zeile
+     */
+    final int length;
+
+    /**
+     * Indizes der alten Stellen, taps Eintraege je neuer Stelle
+     */
+    final int[] index;
+
+    /**
+     * Gewichte zu den Indizes, je neuer Stelle auf Summe 1 normiert
+     */
+    final double[] weight;
+
+    /**
+     * kleinster und groesster verwendeter Index der alten Zeile
+     */
+    final int first, last;
+
+    public ResampleWeights(InterpolationKernel kernel, int srcLength,
+                           int dstLength) {
+        this(kernel, srcLength, dstLength, false);
+    }
+
+    /**
+     * @param periodic true, wenn die alte Zeile periodisch fortgesetzt wird.
+     *                 Die Stelle nach der letzten ist dann wieder die erste.
+     */
+    public ResampleWeights(InterpolationKernel kernel, int srcLength,
+                           int dstLength, boolean periodic) {
+        this(kernel, srcLength, 0, srcLength, dstLength, 0, dstLength,
+                periodic);
+    }
+
+    /**
+     * Tastet den Ausschnitt srcStart bis srcStart + srcCount - 1 einer Zeile
+     * der Laenge srcLength auf die Laenge dstLength um und berechnet davon nur
+     * die neuen Stellen dstStart bis dstStart + dstCount - 1. Die Indizes
+     * beziehen sich auf die ganze alte Zeile.
+     */
+    public ResampleWeights(InterpolationKernel kernel, int srcLength,
+                           int srcStart, int srcCount, int dstLength,
+                           int dstStart, int dstCount, boolean periodic) {
+        double scale = (double) dstLength / srcCount;
+        double stretch = scale < 1
+                && !(kernel instanceof NearestNeighbourKernel) ? 1 / scale : 1;
+        double support = kernel.getSupport() * stretch;
+
+        taps = Math.max(1, (int) Math.ceil(2 * support));
+        length = dstCount;
+        index = new int[dstCount * taps];
+        weight = new double[dstCount * taps];
+
+        /* Stuetzstellen wie in Picture.scale relativ zum neuen Bild */
+        double a = 0.5 * scale + 0.5;
+        double h = srcCount > 1 ? ((srcCount - 0.5) * scale + 0.5 - a)
+                / (srcCount - 1) : scale;
+
+        int min = srcLength - 1, max = 0;
+        for (int i = 0; i < dstCount; i++) {
+            /*
+             * auf 1e-9 runden, damit exakt mittige Lagen unabhaengig von
+             * Rundungsfehlern wie in NearestNeighbour entschieden werden
+             */
+            double u = srcStart + Math.rint((dstStart + i + 1 - a) / h * 1e9)
+                    / 1e9;
+            if (!periodic) {
+                if (u < 0)
+                    u = 0;
+                if (u > srcLength - 1)
+                    u = srcLength - 1;
+            }
+
+            int start = (int) Math.floor(u - support) + 1;
+            double sum = 0;
+            for (int k = 0; k < taps; k++) {
+                int j = start + k;
+                double w = kernel.weight((j - u) / stretch);
+                if (periodic) {
+                    j %= srcLength;
+                    if (j < 0)
+                        j += srcLength;
+                } else {
+                    if (j < 0)
+                        j = 0;
+                    if (j > srcLength - 1)
+                        j = srcLength - 1;
+                }
+                index[i * taps + k] = j;
+                weight[i * taps + k] = w;
+                sum += w;
+                if (w != 0) {
+                    min = Math.min(min, j);
+                    max = Math.max(max, j);
+                }
+            }
+            if (sum != 0) {
+                for (int k = 0; k < taps; k++) {
+                    weight[i * taps + k] /= sum;
+                }
+            }
+        }
+        first = Math.min(min, max);
+        last = max;
+
+        /* Stellen ohne Gewicht auf einen sicher gelesenen Index legen */
+        for (int k = 0; k < index.length; k++) {
+            if (weight[k] == 0)
+                index[k] = first;
+        }
+    }
+
+    /**
+     * Tastet die Zeile src (Werte ab offset mit Abstand stride) um und
+     * schreibt das Ergebnis nach dst (ab dstOffset mit Abstand dstStride)
+     */
+    public void apply(double[] src, int offset, int stride, double[] dst,
+                      int dstOffset, int dstStride) {
+        for (int i = 0; i < length; i++) {
+            double sum = 0;
+            int base = i * taps;
+            for (int k = 0; k < taps; k++) {
+                sum += weight[base + k] * src[offset + index[base + k] * stride];
+            }
+            dst[dstOffset + i * dstStride] = sum;
+        }
+    }
+
+    /**
+     * Tastet ein zeilenweise abgelegtes Feld mit Zeilenlaenge rowLength in
+     * Spaltenrichtung um. Es werden jeweils ganze Zeilen gewichtet addiert,
+     * damit der Speicher fortlaufend gelesen wird.
+     */
+    public void applyColumns(double[] src, int rowLength, double[] dst) {
+        applyColumns(src, rowLength, 0, dst);
+    }
+
+    /**
+     * Wie applyColumns(src, rowLength, dst), wobei src erst mit der Zeile
+     * firstRow beginnt
+     */
+    public void applyColumns(double[] src, int rowLength, int firstRow,
+                             double[] dst) {
+        for (int i = 0; i < length; i++) {
+            int out = i * rowLength;
+            int base = i * taps;
+            for (int x = 0; x < rowLength; x++) {
+                dst[out + x] = 0;
+            }
+            for (int k = 0; k < taps; k++) {
+                double w = weight[base + k];
+                if (w == 0)
+                    continue;
+                int in = (index[base + k] - firstRow) * rowLength;
+                for (int x = 0; x < rowLength; x++) {
+                    dst[out + x] += w * src[in + x];
+                }
+            }
+        }
+    }
+}
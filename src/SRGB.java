@@ -0,0 +1,81 @@
+/**
+ * Umrechnung zwischen sRGB-kodierten 8-Bit-Farbwerten und linearen
+ * Lichtwerten aus [0,1] ueber Tabellen. Beide Richtungen werden einmalig
+ * berechnet, sodass je Pixel kein Math.pow noetig ist.
+ */
+public final class SRGB {
+
+    /**
+     * Anzahl an Stufen der Tabelle fuer die Rueckrichtung. Sie ist so fein,
+     * dass auch der kleinste Abstand zweier linearer Werte der 8-Bit-Stufen
+     * (nahe Schwarz, etwa 3e-4) noch mehrere Tabelleneintraege umfasst.
+     */
+    private static final int ENCODE_STEPS = 65536;
+
+    /**
+     * lineare Werte zu den 256 sRGB-Stufen
+     */
+    private static final double[] DECODE = new double[256];
+
+    /**
+     * sRGB-Stufen zu den linearen Werten i / (ENCODE_STEPS - 1)
+     */
+    private static final byte[] ENCODE = new byte[ENCODE_STEPS];
+
+    static {
+        for (int c = 0; c < 256; c++) {
+            double v = c / 255.;
+            DECODE[c] = v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055,
+                    2.4);
+        }
+        for (int i = 0; i < ENCODE_STEPS; i++) {
+            double v = (double) i / (ENCODE_STEPS - 1);
+            double s = v <= 0.0031308 ? v * 12.92 : 1.055 * Math.pow(v,
+                    1 / 2.4) - 0.055;
+            ENCODE[i] = (byte) Math.round(s * 255.);
+        }
+    }
+
+    private SRGB() {
+    }
+
+    /**
+     * Gibt den linearen Lichtwert zur sRGB-Stufe c (0 bis 255) zurueck
+     */
+    public static double toLinear(int c) {
+        return DECODE[c];
+    }
+
+    /**
+     * Gibt die sRGB-Stufe (0 bis 255) zum linearen Lichtwert v zurueck. Werte
+     * ausserhalb von [0,1] werden an den entsprechenden Randwert angepasst.
+     */
+    public static int fromLinear(double v) {
+        if (v <= 0)
+            return 0;
+        if (v >= 1)
+            return 255;
+        return ENCODE[(int) (v * (ENCODE_STEPS - 1) + 0.5)] & 0xFF;
+    }
+
+    /**
+     * Gibt den linearen Lichtwert zum sRGB-kodierten Wert s aus [0,1] zurueck.
+     * Wird ohne Tabelle berechnet und ist daher fuer Farbtiefen ueber 8 Bit
+     * geeignet.
+     */
+    public static double decode(double s) {
+        if (s <= 0.04045)
+            return s / 12.92;
+        return Math.pow((s + 0.055) / 1.055, 2.4);
+    }
+
+    /**
+     * Gibt den sRGB-kodierten Wert aus [0,1] zum linearen Lichtwert v zurueck,
+     * Gegenstueck zu decode(double)
+     */
+    public static double encode(double v) {
+        if (v <= 0.0031308)
+            return v * 12.92;
+        return 1.055 * Math.pow(v, 1 / 2.4) - 0.055;
+    }
+}
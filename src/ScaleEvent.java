@@ -0,0 +1,55 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR-Ereignis fuer einen Aufruf von Picture.scale. Es wird nur erzeugt, wenn
+ * eine Aufzeichnung mit aktiviertem Ereignis "Picture.Scale" laeuft.
+ */
+@Name("Picture.Scale")
+@Label("Picture Scale")
+@Category({"Image Interpolation"})
+@Description("Ein Aufruf von Picture.scale mit den Laufzeiten seiner Phasen")
+class ScaleEvent extends jdk.jfr.Event {
+
+    @Label("Kernel")
+    String kernel;
+
+    @Label("Source Width")
+    int sourceWidth;
+
+    @Label("Source Height")
+    int sourceHeight;
+
+    @Label("Target Width")
+    int targetWidth;
+
+    @Label("Target Height")
+    int targetHeight;
+
+    @Label("Read")
+    @Timespan(Timespan.NANOSECONDS)
+    long readTime;
+
+    @Label("Init")
+    @Timespan(Timespan.NANOSECONDS)
+    long initTime;
+
+    @Label("Evaluate")
+    @Timespan(Timespan.NANOSECONDS)
+    long evaluateTime;
+
+    @Label("Write")
+    @Timespan(Timespan.NANOSECONDS)
+    long writeTime;
+
+    @Label("Fits")
+    long fits;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+}
@@ -0,0 +1,299 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Messpunkte fuer Picture.scale. Jeder Aufruf wird in Phasen zerlegt (Lesen
+ * der Pixel, Aufbau der Interpolation, Auswertung, Schreiben der Pixel), deren
+ * Laufzeiten je Kern in einem prozessinternen Verzeichnis aufsummiert werden.
+ * Zusaetzlich werden verarbeitete Pixel, Anzahl der Interpolationsaufbauten
+ * (init bzw. Gewichtstabellen) und die pro Aufruf allozierten Bytes gezaehlt
+ * und, falls eine JFR-Aufzeichnung laeuft, ein ScaleEvent erzeugt.
+ * <p/>
+ * Die Zeitmessung erfolgt nur einige Male je Zeile, nicht je Pixel. Das
+ * Verzeichnis kann mit -Dscale.metrics=false oder setEnabled(false)
+ * abgeschaltet werden, die JFR-Ereignisse werden davon unabhaengig ueber die
+ * Aufzeichnung gesteuert.
+ */
+public class ScaleMetrics {
+
+    /**
+     * die Phasen eines Aufrufs
+     */
+    static final int READ = 0;
+    static final int INIT = 1;
+    static final int EVALUATE = 2;
+    static final int WRITE = 3;
+
+    static final String[] PHASE_NAMES = {"read", "init", "evaluate", "write"};
+
+    /**
+     * Phasen ausserhalb von scale: Dekodieren und Kodieren von Bilddateien
+     */
+    static final int DECODE = 0;
+    static final int ENCODE = 1;
+
+    private static volatile boolean enabled = !"false".equals(System
+            .getProperty("scale.metrics"));
+
+    /**
+     * Kennzahlen je Kern
+     */
+    private static final Map<String, Aggregate> kernels = new ConcurrentHashMap<String, Aggregate>();
+
+    private static final LongAdder[] codecNanos = {new LongAdder(),
+            new LongAdder()};
+    private static final LongAdder[] codecCalls = {new LongAdder(),
+            new LongAdder()};
+
+    private static final com.sun.management.ThreadMXBean threads = findThreadBean();
+
+    private ScaleMetrics() {
+    }
+
+    private static com.sun.management.ThreadMXBean findThreadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory
+                .getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()
+                    && sunBean.isThreadAllocatedMemoryEnabled())
+                return sunBean;
+        }
+        return null;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        ScaleMetrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Beginnt die Messung eines Aufrufs von scale
+     */
+    static Sample start(String kernel, int width, int height, int newWidth,
+                        int newHeight) {
+        ScaleEvent event = new ScaleEvent();
+        return new Sample(enabled, event.isEnabled() ? event : null, kernel,
+                width, height, newWidth, newHeight);
+    }
+
+    /**
+     * Traegt die Dauer nanos einer Kodier- oder Dekodierphase ein
+     */
+    static void recordCodec(int phase, long nanos) {
+        if (!enabled)
+            return;
+        codecNanos[phase].add(nanos);
+        codecCalls[phase].increment();
+    }
+
+    /**
+     * Gibt den aktuellen Zeitstempel zurueck, falls gemessen wird, sonst 0
+     */
+    static long now() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Messung eines einzelnen Aufrufs von scale. Die Zeit seit der letzten
+     * Marke wird mit endPhase der angegebenen Phase zugerechnet. Gemessen
+     * wird, wenn das Verzeichnis eingeschaltet ist oder das JFR-Ereignis
+     * aufgezeichnet wird, beides unabhaengig voneinander.
+     */
+    static class Sample {
+        private final boolean record;
+        private final ScaleEvent event;
+        private final boolean active;
+        private final String kernel;
+        private final int width, height, newWidth, newHeight;
+        private final long start;
+        private final long allocatedStart;
+        private final long[] phases = new long[PHASE_NAMES.length];
+        private long mark;
+        private long fits;
+
+        Sample(boolean record, ScaleEvent event, String kernel, int width,
+               int height, int newWidth, int newHeight) {
+            this.record = record;
+            this.event = event;
+            active = record || event != null;
+            if (event != null)
+                event.begin();
+            this.kernel = kernel;
+            this.width = width;
+            this.height = height;
+            this.newWidth = newWidth;
+            this.newHeight = newHeight;
+            allocatedStart = active ? allocatedBytes() : 0;
+            start = active ? System.nanoTime() : 0;
+            mark = start;
+        }
+
+        /**
+         * Rechnet die Zeit seit der letzten Marke der Phase phase zu
+         */
+        void endPhase(int phase) {
+            if (!active)
+                return;
+            long now = System.nanoTime();
+            phases[phase] += now - mark;
+            mark = now;
+        }
+
+        /**
+         * Zaehlt count Aufbauten eines Interpolationsverfahrens
+         */
+        void addFits(long count) {
+            fits += count;
+        }
+
+        /**
+         * Schliesst die Messung ab und traegt sie ein
+         */
+        void finish() {
+            if (!active)
+                return;
+            long total = System.nanoTime() - start;
+            long allocated = allocatedStart >= 0 ? allocatedBytes()
+                    - allocatedStart : -1;
+
+            if (record) {
+                Aggregate aggregate = kernels.get(kernel);
+                if (aggregate == null) {
+                    kernels.putIfAbsent(kernel, new Aggregate());
+                    aggregate = kernels.get(kernel);
+                }
+                aggregate.latency.record(total);
+                for (int i = 0; i < phases.length; i++) {
+                    aggregate.phases[i].add(phases[i]);
+                }
+                aggregate.pixelsIn.add((long) width * height);
+                aggregate.pixelsOut.add((long) newWidth * newHeight);
+                aggregate.fits.add(fits);
+                if (allocated >= 0)
+                    aggregate.allocated.add(allocated);
+            }
+
+            if (event != null && event.shouldCommit()) {
+                event.kernel = kernel;
+                event.sourceWidth = width;
+                event.sourceHeight = height;
+                event.targetWidth = newWidth;
+                event.targetHeight = newHeight;
+                event.readTime = phases[READ];
+                event.initTime = phases[INIT];
+                event.evaluateTime = phases[EVALUATE];
+                event.writeTime = phases[WRITE];
+                event.fits = fits;
+                event.allocated = allocated;
+                event.commit();
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        if (threads == null)
+            return -1;
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * aufsummierte Kennzahlen eines Kerns
+     */
+    private static class Aggregate {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder[] phases = new LongAdder[PHASE_NAMES.length];
+        final LongAdder pixelsIn = new LongAdder();
+        final LongAdder pixelsOut = new LongAdder();
+        final LongAdder fits = new LongAdder();
+        final LongAdder allocated = new LongAdder();
+
+        Aggregate() {
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Gibt alle Kennzahlen im Textformat aus, je Kern als eigenes Label.
+     * Zahlen werden unabhaengig von der Standard-Locale mit Dezimalpunkt
+     * geschrieben.
+     */
+    public static String format() {
+        StringBuilder result = new StringBuilder();
+        Map<String, Aggregate> sorted = new TreeMap<String, Aggregate>(kernels);
+        for (Map.Entry<String, Aggregate> entry : sorted.entrySet()) {
+            String label = "{kernel=\"" + entry.getKey() + "\"}";
+            Aggregate aggregate = entry.getValue();
+            result.append("picture_scale_calls_total").append(label).append(' ')
+                    .append(aggregate.latency.getCount()).append('\n');
+            for (int i = 0; i < PHASE_NAMES.length; i++) {
+                result.append("picture_scale_phase_ms{kernel=\"")
+                        .append(entry.getKey()).append("\",phase=\"")
+                        .append(PHASE_NAMES[i]).append("\"} ")
+                        .append(String.format(Locale.ROOT, "%.3f",
+                                aggregate.phases[i].sum() / 1e6)).append('\n');
+            }
+            result.append("picture_scale_pixels_in_total").append(label)
+                    .append(' ').append(aggregate.pixelsIn.sum()).append('\n');
+            result.append("picture_scale_pixels_out_total").append(label)
+                    .append(' ').append(aggregate.pixelsOut.sum()).append('\n');
+            result.append("picture_scale_fits_total").append(label).append(' ')
+                    .append(aggregate.fits.sum()).append('\n');
+            result.append("picture_scale_allocated_bytes_total").append(label)
+                    .append(' ').append(aggregate.allocated.sum()).append('\n');
+            result.append(aggregate.latency.format("picture_scale_latency_ms",
+                    "kernel=\"" + entry.getKey() + "\""));
+        }
+        result.append("picture_decode_ms ").append(String.format(
+                Locale.ROOT, "%.3f", codecNanos[DECODE].sum() / 1e6))
+                .append('\n');
+        result.append("picture_decode_total ").append(codecCalls[DECODE].sum())
+                .append('\n');
+        result.append("picture_encode_ms ").append(String.format(
+                Locale.ROOT, "%.3f", codecNanos[ENCODE].sum() / 1e6))
+                .append('\n');
+        result.append("picture_encode_total ").append(codecCalls[ENCODE].sum())
+                .append('\n');
+        return result.toString();
+    }
+
+    /**
+     * Gibt die Kennzahlen alle period Zeiteinheiten auf out aus. Der
+     * zurueckgegebene Dienst kann mit shutdown() beendet werden.
+     */
+    public static ScheduledExecutorService startReporter(long period,
+                                                         TimeUnit unit,
+                                                         final PrintStream out) {
+        ScheduledExecutorService reporter = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "scale-metrics-reporter");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        reporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                out.print(format());
+                out.flush();
+            }
+        }, period, period, unit);
+        return reporter;
+    }
+}
@@ -0,0 +1,421 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Kleiner HTTP-Server, der Bilder skaliert. Ein Bild wird per POST an
+ * /scale?width=..&height=..&mode=..&format=..&quality=.. gesendet und
+ * skaliert zurueckgegeben. mode ist der Name eines Kerns aus der
+ * KernelRegistry oder einer der Interpolations-Modi aus Picture als Zahl,
+ * format das Ausgabeformat (Standard png), quality die optionale Qualitaet
+ * zwischen 0 und 1 (siehe Picture.setCompressionQuality). Unter /metrics
+ * stehen Kennzahlen im Textformat bereit.
+ * <p/>
+ * Die Anfragen werden auf eigenen Threads angenommen und gelesen (virtuelle
+ * Threads, sofern die Laufzeitumgebung sie anbietet). Das Dekodieren,
+ * Skalieren und Kodieren laeuft auf einem festen Pool von Arbeitsthreads mit
+ * begrenzter Warteschlange, das Ergebnis wird direkt in die Antwort kodiert.
+ * Jede Anfrage belegt vor dem Lesen des Bildes einen Platz im Pool oder in
+ * der Warteschlange. Ist keiner frei, wird sie sofort mit 503 abgewiesen,
+ * ohne das Bild zu lesen, sodass hoechstens so viele Bilder im Speicher
+ * liegen, wie Plaetze vorhanden sind.
+ */
+public class ScaleServer {
+
+    /**
+     * maximale Groesse eines hochgeladenen Bildes in Bytes
+     */
+    static final int MAX_UPLOAD = 64 << 20;
+
+    /**
+     * maximale Anzahl an Pixeln des skalierten Bildes
+     */
+    static final long MAX_PIXELS = 100000000L;
+
+    private static final Logger LOG = Logger.getLogger(ScaleServer.class
+            .getName());
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * freie Plaetze fuer Anfragen, je einer pro Arbeitsthread und Platz in
+     * der Warteschlange
+     */
+    private final Semaphore slots;
+    private final ExecutorService requestThreads;
+
+    /**
+     * Kennzahlen
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong pixels = new AtomicLong();
+    private final long startTime = System.nanoTime();
+
+    /**
+     * @param port       Port, auf dem der Server lauscht
+     * @param threads    Anzahl an Arbeitsthreads fuer das Skalieren
+     * @param queueLimit maximale Anzahl wartender Auftraege
+     */
+    public ScaleServer(int port, int threads, int queueLimit)
+            throws IOException {
+        workers = new ThreadPoolExecutor(threads, threads, 0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueLimit),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "scale-worker-"
+                                + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                }, new ThreadPoolExecutor.AbortPolicy());
+        slots = new Semaphore(threads + queueLimit);
+        requestThreads = createRequestExecutor();
+
+        ImageIO.setUseCache(false);
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(requestThreads);
+        server.createContext("/scale", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleScale(exchange);
+            }
+        });
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                send(exchange, 200, "text/plain; charset=utf-8",
+                        formatMetrics().getBytes("UTF-8"));
+            }
+        });
+    }
+
+    /**
+     * Erzeugt einen Executor mit einem virtuellen Thread je Anfrage, falls die
+     * Laufzeitumgebung das unterstuetzt, sonst einen wachsenden Pool
+     * gewoehnlicher Threads
+     */
+    private static ExecutorService createRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Beendet den Server. Laufende Anfragen erhalten bis zu delay Sekunden
+     * Zeit.
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        workers.shutdown();
+        requestThreads.shutdown();
+    }
+
+    private void handleScale(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+                sendText(exchange, 405, "Nur POST wird unterstuetzt");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI()
+                    .getRawQuery());
+            final int width, height;
+            try {
+                width = Integer.parseInt(query.get("width"));
+                height = Integer.parseInt(query.get("height"));
+            } catch (NumberFormatException e) {
+                sendText(exchange, 400, "width und height muessen Zahlen sein");
+                return;
+            }
+            if (width < 1 || height < 1 || (long) width * height > MAX_PIXELS) {
+                sendText(exchange, 400, "Ungueltige Bildgroesse");
+                return;
+            }
+            final InterpolationKernel kernel = findKernel(query.get("mode"));
+            if (kernel == null) {
+                sendText(exchange, 400, "Unbekannter Modus " + query.get("mode"));
+                return;
+            }
+            final String format = query.containsKey("format") ? query
+                    .get("format") : "png";
+            final float quality;
+            try {
+                quality = query.containsKey("quality") ? Float.parseFloat(query
+                        .get("quality")) : -1;
+            } catch (NumberFormatException e) {
+                sendText(exchange, 400, "quality muss eine Zahl sein");
+                return;
+            }
+            if (quality > 1) {
+                sendText(exchange, 400, "quality muss hoechstens 1 sein");
+                return;
+            }
+
+            String length = exchange.getRequestHeaders().getFirst(
+                    "Content-Length");
+            try {
+                if (length != null
+                        && Long.parseLong(length.trim()) > MAX_UPLOAD) {
+                    sendText(exchange, 413, "Bild ist zu gross");
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                sendText(exchange, 400, "Ungueltige Content-Length");
+                return;
+            }
+            if (!slots.tryAcquire()) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                sendText(exchange, 503, "Server ausgelastet");
+                return;
+            }
+            try {
+                scale(exchange, width, height, kernel, format, quality, start);
+            } finally {
+                slots.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Liest das Bild einer Anfrage, fuer die bereits ein Platz belegt ist,
+     * laesst es von einem Arbeitsthread skalieren und in die Antwort
+     * kodieren
+     */
+    private void scale(final HttpExchange exchange, final int width,
+                       final int height, final InterpolationKernel kernel,
+                       final String format, final float quality, long start)
+            throws IOException {
+        final byte[] upload = readBody(exchange.getRequestBody());
+        if (upload == null) {
+            sendText(exchange, 413, "Bild ist zu gross");
+            return;
+        }
+
+        final long queued = System.nanoTime();
+        Future<Boolean> result;
+        try {
+            result = workers.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws IOException {
+                    queueWait.record(System.nanoTime() - queued);
+                    return scale(upload, width, height, kernel, format,
+                            quality, exchange);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            exchange.getResponseHeaders().add("Retry-After", "1");
+            sendText(exchange, 503, "Server ausgelastet");
+            return;
+        }
+
+        boolean sent;
+        try {
+            sent = result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            if (exchange.getResponseCode() < 0)
+                sendText(exchange, 503, "Abgebrochen");
+            return;
+        } catch (ExecutionException e) {
+            failed.incrementAndGet();
+            LOG.log(Level.WARNING, "Skalieren fehlgeschlagen", e.getCause());
+            if (exchange.getResponseCode() < 0)
+                sendText(exchange, 500, "Interner Fehler");
+            return;
+        }
+        if (!sent) {
+            failed.incrementAndGet();
+            sendText(exchange, 415, "Bild oder Format " + format
+                    + " wird nicht unterstuetzt");
+            return;
+        }
+        completed.incrementAndGet();
+        pixels.addAndGet((long) width * height);
+        latency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Dekodiert und skaliert ein Bild und kodiert es direkt in die Antwort
+     * von exchange (ohne Laengenangabe, also chunked). Gibt false zurueck,
+     * ohne etwas zu senden, wenn das Bild nicht gelesen oder nicht im Format
+     * format geschrieben werden kann. Fuer Formate ohne Alphakanal wird
+     * direkt in ein Bild vom Typ TYPE_3BYTE_BGR skaliert, das der Kodierer
+     * ohne Umwandlung schreibt.
+     */
+    private static boolean scale(byte[] upload, int width, int height,
+                                 InterpolationKernel kernel, String format,
+                                 float quality, HttpExchange exchange)
+            throws IOException {
+        long start = ScaleMetrics.now();
+        BufferedImage img = ImageIO.read(new ByteArrayInputStream(upload));
+        ScaleMetrics.recordCodec(ScaleMetrics.DECODE, ScaleMetrics.now() - start);
+        if (img == null)
+            return false;
+        Picture picture = new Picture(img);
+        String name = format.toLowerCase();
+        if ((name.equals("jpg") || name.equals("jpeg") || name.equals("bmp"))
+                && img.getType() != BufferedImage.TYPE_BYTE_GRAY)
+            picture.setOutputType(BufferedImage.TYPE_3BYTE_BGR);
+        picture.setCompressionQuality(quality);
+        picture.scale(width, height, kernel);
+        if (!picture.canSave(format))
+            return false;
+        exchange.getResponseHeaders().set("Content-Type", "image/"
+                + format.toLowerCase());
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            picture.save(out, format);
+        } finally {
+            out.close();
+        }
+        return true;
+    }
+
+    private static InterpolationKernel findKernel(String mode) {
+        if (mode == null)
+            return KernelRegistry.get("linear");
+        try {
+            return KernelRegistry.get(Integer.parseInt(mode));
+        } catch (NumberFormatException e) {
+            return KernelRegistry.get(mode);
+        }
+    }
+
+    /**
+     * Liest den Rumpf der Anfrage, hoechstens MAX_UPLOAD Bytes. Bei groesseren
+     * Rumpfen wird null zurueckgegeben.
+     */
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            if (body.size() + read > MAX_UPLOAD)
+                return null;
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private static Map<String, String> parseQuery(String query)
+            throws IOException {
+        Map<String, String> result = new HashMap<String, String>();
+        if (query == null)
+            return result;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0)
+                continue;
+            result.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                    URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+        }
+        return result;
+    }
+
+    private static void sendText(HttpExchange exchange, int status,
+                                 String text) throws IOException {
+        send(exchange, status, "text/plain; charset=utf-8",
+                (text + "\n").getBytes("UTF-8"));
+    }
+
+    private static void send(HttpExchange exchange, int status,
+                             String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    /**
+     * Gibt alle Kennzahlen im Textformat aus, Zahlen unabhaengig von der
+     * Standard-Locale mit Dezimalpunkt
+     */
+    String formatMetrics() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        StringBuilder result = new StringBuilder();
+        result.append("scale_queue_depth ").append(workers.getQueue().size())
+                .append('\n');
+        result.append("scale_active_workers ").append(workers.getActiveCount())
+                .append('\n');
+        result.append("scale_completed_total ").append(completed.get())
+                .append('\n');
+        result.append("scale_rejected_total ").append(rejected.get())
+                .append('\n');
+        result.append("scale_failed_total ").append(failed.get()).append('\n');
+        result.append("scale_throughput_per_second ")
+                .append(String.format(Locale.ROOT, "%.3f", completed.get() / seconds))
+                .append('\n');
+        result.append("scale_output_pixels_per_second ")
+                .append(String.format(Locale.ROOT, "%.0f", pixels.get() / seconds))
+                .append('\n');
+        result.append(latency.format("scale_latency_ms"));
+        result.append(queueWait.format("scale_queue_wait_ms"));
+        result.append(ScaleMetrics.format());
+        return result.toString();
+    }
+
+    /**
+     * Aufruf: ScaleServer [port] [arbeitsthreads] [warteschlange]
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime
+                .getRuntime().availableProcessors();
+        int queueLimit = args.length > 2 ? Integer.parseInt(args[2])
+                : 4 * threads;
+        new ScaleServer(port, threads, queueLimit).start();
+        System.out.println("ScaleServer lauscht auf Port " + port);
+    }
+}
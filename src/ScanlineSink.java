@@ -0,0 +1,19 @@
+import java.io.IOException;
+
+/**
+ * Ziel, in das ein Bild Zeile fuer Zeile von oben nach unten geschrieben
+ * wird. Jede Zeile wird sofort kodiert und weitergegeben.
+ */
+public interface ScanlineSink {
+
+    /**
+     * Schreibt die naechste Zeile aus nicht vormultiplizierten ARGB-Werten
+     */
+    public void writeRow(int[] row) throws IOException;
+
+    /**
+     * Schliesst das Bild ab. Der darunterliegende Strom wird nicht
+     * geschlossen.
+     */
+    public void finish() throws IOException;
+}
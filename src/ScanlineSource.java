@@ -0,0 +1,33 @@
+import java.io.IOException;
+
+/**
+ * Quelle, die ein Bild Zeile fuer Zeile von oben nach unten liefert, ohne es
+ * vollstaendig im Speicher zu halten
+ */
+public interface ScanlineSource {
+
+    /**
+     * Breite des Bildes
+     */
+    public int getWidth();
+
+    /**
+     * Hoehe des Bildes
+     */
+    public int getHeight();
+
+    /**
+     * Gibt an, ob das Bild einen Alphakanal besitzt
+     */
+    public boolean hasAlpha();
+
+    /**
+     * Liest die naechste Zeile als nicht vormultiplizierte ARGB-Werte nach row
+     */
+    public void readRow(int[] row) throws IOException;
+
+    /**
+     * Gibt alle belegten Ressourcen frei
+     */
+    public void close() throws IOException;
+}
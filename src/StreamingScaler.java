@@ -0,0 +1,253 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Skaliert ein Bild vom Eingabe- zum Ausgabestrom, ohne es vollstaendig im
+ * Speicher zu halten. Jede Quellzeile wird beim Lesen in x-Richtung
+ * umgetastet und in einem Ringpuffer abgelegt, der gerade so viele Zeilen
+ * fasst, wie der Kern in y-Richtung benoetigt. Sobald alle Zeilen fuer eine
+ * neue Zeile vorliegen, wird diese berechnet und sofort kodiert. Speicherbedarf
+ * und Zeit bis zur ersten Ausgabe haengen damit nicht von der Bildhoehe ab.
+ * <p/>
+ * Es koennen nur Kerne mit Gewichtstabelle verwendet werden, da globale
+ * Verfahren ganze Spalten benoetigen. Ausgabeformate sind "png" und "bmp".
+ */
+public class StreamingScaler {
+
+    private final InterpolationKernel kernel;
+
+    private boolean linearLight;
+
+    public StreamingScaler(InterpolationKernel kernel) {
+        if (!kernel.hasWeightTable() || !kernel.isSeparable())
+            throw new IllegalArgumentException("Kern " + kernel.getName()
+                    + " kann nicht zeilenweise angewendet werden");
+        this.kernel = kernel;
+    }
+
+    /**
+     * Legt fest, ob in linearen Lichtwerten interpoliert wird, siehe
+     * Picture.setLinearLight
+     */
+    public void setLinearLight(boolean linearLight) {
+        this.linearLight = linearLight;
+    }
+
+    /**
+     * Skaliert das Bild aus der Datei in und schreibt es nach out. Das Format
+     * wird an der Endung von out erkannt.
+     */
+    public void scale(File in, File out, int newWidth, int newHeight)
+            throws IOException {
+        String name = out.getName();
+        String formatName = name.substring(name.lastIndexOf('.') + 1);
+        InputStream input = new FileInputStream(in);
+        try {
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(
+                    out));
+            try {
+                scale(input, output, newWidth, newHeight, formatName);
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Skaliert das Bild aus dem Strom in und schreibt es im Format formatName
+     * nach out. Die Stroeme werden nicht geschlossen.
+     */
+    public void scale(InputStream in, OutputStream out, int newWidth,
+                      int newHeight, String formatName) throws IOException {
+        ScanlineSource source = open(in);
+        try {
+            ScanlineSink sink = createSink(out, newWidth, newHeight,
+                    source.hasAlpha(), formatName);
+            scale(source, sink, newWidth, newHeight);
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Oeffnet eine Quelle fuer den Strom in. PNG-Bilder ohne Interlacing
+     * werden direkt dekodiert, alle anderen ueber einen ImageReader. Die
+     * Quelle liest ueber eine Huelle, deren close den Strom in nicht
+     * schliesst, dieser gehoert weiter dem Aufrufer.
+     */
+    static ScanlineSource open(InputStream in) throws IOException {
+        in = new BufferedInputStream(new FilterInputStream(in) {
+            @Override
+            public void close() {
+            }
+        });
+        if (PngScanlineSource.canRead(in))
+            return new PngScanlineSource(in);
+        return new ImageReaderScanlineSource(in);
+    }
+
+    static ScanlineSink createSink(OutputStream out, int width, int height,
+                                   boolean alpha, String formatName)
+            throws IOException {
+        if (formatName.equalsIgnoreCase("png"))
+            return new PngScanlineSink(out, width, height, alpha);
+        if (formatName.equalsIgnoreCase("bmp"))
+            return new BmpScanlineSink(out, width, height);
+        throw new IOException("Format " + formatName
+                + " kann nicht zeilenweise geschrieben werden");
+    }
+
+    /**
+     * Skaliert alle Zeilen aus source auf newWidth x newHeight und schreibt
+     * sie nach sink
+     */
+    public void scale(ScanlineSource source, ScanlineSink sink, int newWidth,
+                      int newHeight) throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        boolean alpha = source.hasAlpha();
+        int channels = alpha ? 4 : 3;
+
+        ResampleWeights horizontal = new ResampleWeights(kernel, width,
+                newWidth);
+        ResampleWeights vertical = new ResampleWeights(kernel, height,
+                newHeight);
+
+        /* Ringpuffer der in x-Richtung umgetasteten Zeilen */
+        int capacity = vertical.taps;
+        double[][][] rows = new double[capacity][channels][newWidth];
+
+        int[] in = new int[width];
+        double[][] line = new double[channels][width];
+        int[] out = new int[newWidth];
+        double[][] result = new double[channels][newWidth];
+        int nextRow = 0;
+
+        for (int i = 0; i < newHeight; i++) {
+            int base = i * vertical.taps;
+
+            /* benoetigte Quellzeilen nachlesen */
+            int last = 0;
+            for (int k = 0; k < vertical.taps; k++) {
+                last = Math.max(last, vertical.index[base + k]);
+            }
+            while (nextRow <= last) {
+                source.readRow(in);
+                decodeRow(in, line, alpha);
+                int slot = nextRow % capacity;
+                for (int c = 0; c < channels; c++) {
+                    horizontal.apply(line[c], 0, 1, rows[slot][c], 0, 1);
+                }
+                nextRow++;
+            }
+
+            /* neue Zeile als gewichtete Summe der gepufferten Zeilen */
+            for (int c = 0; c < channels; c++) {
+                Arrays.fill(result[c], 0);
+            }
+            for (int k = 0; k < vertical.taps; k++) {
+                double w = vertical.weight[base + k];
+                if (w == 0)
+                    continue;
+                double[][] row = rows[vertical.index[base + k] % capacity];
+                for (int c = 0; c < channels; c++) {
+                    for (int x = 0; x < newWidth; x++) {
+                        result[c][x] += w * row[c][x];
+                    }
+                }
+            }
+            encodeRow(result, out, alpha);
+            sink.writeRow(out);
+        }
+
+        /* restliche Zeilen verwerfen, damit die Quelle vollstaendig gelesen ist */
+        while (nextRow < height) {
+            source.readRow(in);
+            nextRow++;
+        }
+        sink.finish();
+    }
+
+    private void decodeRow(int[] in, double[][] line, boolean alpha) {
+        for (int x = 0; x < in.length; x++) {
+            int argb = in[x];
+            line[0][x] = decode((argb >> 16) & 0xFF);
+            line[1][x] = decode((argb >> 8) & 0xFF);
+            line[2][x] = decode(argb & 0xFF);
+            if (alpha) {
+                double a = (argb >>> 24) / 255.;
+                line[0][x] *= a;
+                line[1][x] *= a;
+                line[2][x] *= a;
+                line[3][x] = a;
+            }
+        }
+    }
+
+    private void encodeRow(double[][] result, int[] out, boolean alpha) {
+        for (int x = 0; x < out.length; x++) {
+            if (alpha) {
+                int a = toByte(result[3][x]);
+                if (a == 0) {
+                    out[x] = 0;
+                    continue;
+                }
+                double factor = 255. / a;
+                out[x] = (a << 24) | (encode(result[0][x] * factor) << 16)
+                        | (encode(result[1][x] * factor) << 8)
+                        | encode(result[2][x] * factor);
+            } else {
+                out[x] = 0xFF000000 | (encode(result[0][x]) << 16)
+                        | (encode(result[1][x]) << 8) | encode(result[2][x]);
+            }
+        }
+    }
+
+    private double decode(int c) {
+        if (linearLight)
+            return SRGB.toLinear(c);
+        return c / 255.;
+    }
+
+    private int encode(double c) {
+        if (linearLight)
+            return SRGB.fromLinear(c);
+        return toByte(c);
+    }
+
+    private static int toByte(double c) {
+        if (c < 0)
+            c = 0;
+        if (c > 1)
+            c = 1;
+        return (int) Math.round(c * 255.);
+    }
+
+    /**
+     * Aufruf: StreamingScaler eingabe ausgabe breite hoehe [kern]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Aufruf: StreamingScaler eingabe ausgabe breite hoehe [kern]");
+            return;
+        }
+        InterpolationKernel kernel = KernelRegistry.get(args.length > 4 ? args[4]
+                : "lanczos3");
+        if (kernel == null) {
+            System.out.println("Unbekannter Kern " + args[4]);
+            return;
+        }
+        new StreamingScaler(kernel).scale(new File(args[0]), new File(args[1]),
+                Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+    }
+}
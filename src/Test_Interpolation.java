@@ -1,13 +1,65 @@
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class Test_Interpolation {
 
+    /**
+     * Anzahl der bisher nicht erfuellten Pruefungen
+     */
+    static int failures;
+
     /**
      * @param args
      */
     public static void main(String[] args) {
         testNewton();
+        testNewtonReference();
+        testNewtonCompensated();
+        testNewtonSamplingPoints();
+        testChebyshev();
         testSplines();
+        testGeneralSpline();
+        testKernelProperties();
+        testPictureProperties();
+        testGridInterpolation();
+        testHighDepth();
+        testMetricsFormat();
+        testBatchScaler();
+        testStreamingPng();
+        System.out.println(failures + " Fehler");
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Gibt das Ergebnis einer Pruefung aus und zaehlt sie als Fehler, wenn
+     * ok nicht gilt
+     */
+    private static void check(boolean ok, String message) {
+        System.out.println(message);
+        if (!ok) {
+            failures++;
+            System.out.println("FEHLER");
+        }
     }
 
     private static void testNewton() {
@@ -16,16 +68,855 @@ public class Test_Interpolation {
         double[] y = {-3, 1, -3};
         NewtonPolynom p = new NewtonPolynom(x, y);
 
-        System.out.println(p.evaluate(0) + " sollte sein: 0.0");
+        double value = p.evaluate(0);
+        check(Math.abs(value) < 1e-12, value + " sollte sein: 0.0");
+        System.out.println("-------------------------------");
+    }
+
+    /**
+     * Vergleicht die Auswertung des Newton-Polynoms (einzeln, mehrere Stellen
+     * auf einmal und kompensiert) mit der Lagrange-Darstellung als
+     * Referenz
+     */
+    private static void testNewtonReference() {
+        int n = 12;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = Math.cos((2 * i + 1) * Math.PI / (2 * n));
+            y[i] = Math.exp(x[i]) * Math.sin(3 * x[i]);
+        }
+        NewtonPolynom p = new NewtonPolynom(x, y);
+
+        double[] z = new double[1000];
+        for (int k = 0; k < z.length; k++) {
+            z[k] = -1 + 2.0 * k / (z.length - 1);
+        }
+        double[] batch = new double[z.length];
+        p.evaluate(z, batch);
+
+        double error = 0, batchError = 0, compensatedError = 0;
+        for (int k = 0; k < z.length; k++) {
+            double reference = lagrange(x, y, z[k]);
+            error = Math.max(error, Math.abs(p.evaluate(z[k]) - reference));
+            batchError = Math.max(batchError, Math.abs(batch[k] - reference));
+        }
+        p.setCompensated(true);
+        for (int k = 0; k < z.length; k++) {
+            compensatedError = Math.max(compensatedError,
+                    Math.abs(p.evaluate(z[k]) - lagrange(x, y, z[k])));
+        }
+        check(error < 1e-12, error + " sollte kleiner als 1e-12 sein");
+        check(batchError < 1e-12, batchError
+                + " sollte kleiner als 1e-12 sein");
+        check(compensatedError < 1e-12, compensatedError
+                + " sollte kleiner als 1e-12 sein");
+        System.out.println("-------------------------------");
+    }
+
+    /**
+     * Schlecht konditionierter Fall: 30 aequidistante Stellen in [0, 1] mit
+     * abwechselnden Werten 1, -1 und Auswertung in [1, 1.5], wo sich grosse
+     * Terme weitgehend aufheben. Referenz ist die exakte Auswertung derselben
+     * Newton-Darstellung mit BigDecimal. Das einfache Horner-Schema verliert
+     * hier viele Stellen, das kompensierte muss auf wenige ulp genau sein.
+     */
+    private static void testNewtonCompensated() {
+        int n = 30;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = (double) i / (n - 1);
+            y[i] = i % 2 == 0 ? 1 : -1;
+        }
+        NewtonPolynom p = new NewtonPolynom(x, y);
+        double plain = 0, compensated = 0;
+        for (int k = 0; k <= 200; k++) {
+            double z = 1 + k * 0.5 / 200;
+            double reference = exactNewton(p, z);
+            p.setCompensated(false);
+            plain = Math.max(plain, Math.abs(p.evaluate(z) - reference)
+                    / Math.ulp(reference));
+            p.setCompensated(true);
+            compensated = Math.max(compensated, Math.abs(p.evaluate(z)
+                    - reference) / Math.ulp(reference));
+        }
+        check(compensated <= 4, "kompensiert: " + compensated
+                + " ulp sollte hoechstens 4 sein");
+        check(plain > 1e6, "einfach: " + plain
+                + " ulp sollte groesser als 1e6 sein");
+        System.out.println("-------------------------------");
+    }
+
+    /**
+     * Prueft das schrittweise Erweitern des Newton-Polynoms: einzeln
+     * angehaengte Stuetzpunkte ergeben dasselbe Polynom wie init, eine schon
+     * vorhandene Stuetzstelle wird uebergangen, und im gleitenden Modus
+     * bleiben nur die letzten window Stuetzpunkte uebrig
+     */
+    private static void testNewtonSamplingPoints() {
+        int n = 12;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        Random random = new Random(4);
+        for (int i = 0; i < n; i++) {
+            x[i] = i + 0.5 * random.nextDouble();
+            y[i] = Math.sin(x[i]);
+        }
+        NewtonPolynom added = new NewtonPolynom();
+        for (int i = 0; i < n; i++) {
+            added.addSamplingPoint(x[i], y[i]);
+        }
+        NewtonPolynom fresh = new NewtonPolynom(x, y);
+        check(added.getSize() == n && maxDistance(added, fresh, x[0],
+                x[n - 1]) < 1e-12, "einzeln: " + maxDistance(added, fresh,
+                x[0], x[n - 1]) + " sollte kleiner als 1e-12 sein");
+
+        added.addSamplingPoint(x[3], 5);
+        check(added.getSize() == n && maxDistance(added, fresh, x[0],
+                x[n - 1]) == 0, "doppelte Stelle: " + added.getSize()
+                + " Stuetzstellen, sollte sein: " + n);
+
+        int window = 5;
+        NewtonPolynom sliding = new NewtonPolynom();
+        sliding.setWindow(window);
+        for (int i = 0; i < n; i++) {
+            sliding.addSamplingPoint(x[i], y[i]);
+        }
+        NewtonPolynom last = new NewtonPolynom(
+                Arrays.copyOfRange(x, n - window, n),
+                Arrays.copyOfRange(y, n - window, n));
+        double distance = maxDistance(sliding, last, x[n - window], x[n - 1]);
+        check(sliding.getSize() == window && distance < 1e-12, "Fenster: "
+                + sliding.getSize() + " Stuetzstellen, " + distance
+                + " sollte sein: " + window + ", kleiner als 1e-12");
+
+        fresh.setWindow(3);
+        NewtonPolynom lastThree = new NewtonPolynom(
+                Arrays.copyOfRange(x, n - 3, n),
+                Arrays.copyOfRange(y, n - 3, n));
+        distance = maxDistance(fresh, lastThree, x[n - 3], x[n - 1]);
+        check(fresh.getSize() == 3 && distance < 1e-12,
+                "verkleinertes Fenster: " + fresh.getSize()
+                        + " Stuetzstellen, " + distance
+                        + " sollte sein: 3, kleiner als 1e-12");
+        System.out.println("-------------------------------");
+    }
+
+    /**
+     * Groesster Abstand zweier Interpolanten an 1001 Stellen in [from, to]
+     */
+    private static double maxDistance(InterpolationMethod p,
+                                      InterpolationMethod q, double from,
+                                      double to) {
+        double max = 0;
+        for (int k = 0; k <= 1000; k++) {
+            double z = from + k * (to - from) / 1000;
+            max = Math.max(max, Math.abs(p.evaluate(z) - q.evaluate(z)));
+        }
+        return max;
+    }
+
+    /**
+     * Wertet die Newton-Darstellung von p exakt aus und rundet erst das
+     * Ergebnis auf double
+     */
+    private static double exactNewton(NewtonPolynom p, double z) {
+        BigDecimal result = new BigDecimal(p.a[p.size - 1]);
+        BigDecimal bz = new BigDecimal(z);
+        for (int i = p.size - 2; i >= 0; i--) {
+            result = result.multiply(bz.subtract(new BigDecimal(p.x[i])))
+                    .add(new BigDecimal(p.a[i]));
+        }
+        return result.doubleValue();
+    }
+
+    /**
+     * Interpoliert die Runge-Funktion an 1001 Tschebyscheff-Stellen und
+     * vergleicht mit der Funktion, vor und nach dem Abschneiden der Reihe
+     */
+    private static void testChebyshev() {
+        int n = 1000;
+        double[] x = ChebyshevInterpolation.points(-5, 5, n);
+        double[] y = new double[n + 1];
+        for (int j = 0; j <= n; j++) {
+            y[j] = 1 / (1 + x[j] * x[j]);
+        }
+        ChebyshevInterpolation p = new ChebyshevInterpolation();
+        p.init(-5, 5, n, y);
+
+        double[] z = new double[1000];
+        for (int k = 0; k < z.length; k++) {
+            z[k] = -5 + 10.0 * k / (z.length - 1);
+        }
+        double[] values = new double[z.length];
+        p.evaluate(z, values);
+        double error = 0;
+        for (int k = 0; k < z.length; k++) {
+            error = Math.max(error, Math.abs(values[k] - 1 / (1 + z[k] * z[k])));
+        }
+        int size = p.truncate(1e-13);
+        double truncated = 0;
+        for (int k = 0; k < z.length; k++) {
+            truncated = Math.max(truncated,
+                    Math.abs(p.evaluate(z[k]) - 1 / (1 + z[k] * z[k])));
+        }
+        check(error < 1e-14, error + " sollte kleiner als 1e-14 sein");
+        check(truncated < 1e-12, truncated + " mit " + size
+                + " Koeffizienten sollte kleiner als 1e-12 sein");
+        System.out.println("-------------------------------");
+    }
+
+    /**
+     * Wertet das Interpolationspolynom in der Lagrange-Darstellung aus
+     */
+    private static double lagrange(double[] x, double[] y, double z) {
+        double sum = 0;
+        for (int i = 0; i < x.length; i++) {
+            double l = 1;
+            for (int j = 0; j < x.length; j++) {
+                if (j != i)
+                    l *= (z - x[j]) / (x[i] - x[j]);
+            }
+            sum += y[i] * l;
+        }
+        return sum;
+    }
+
+    /**
+     * Prueft fuer alle Kerne der KernelRegistry Eigenschaften, die jedes
+     * Interpolationsverfahren erfuellen muss: exakt an den Stuetzstellen,
+     * Konstanten bleiben erhalten, gespiegelte Stuetzwerte ergeben den
+     * gespiegelten Interpolanten. linear, poly und catmull-rom (abseits der
+     * Raender) geben Geraden zudem exakt wieder.
+     * <p/>
+     * nearest ist nicht symmetrisch, da genau in der Mitte zwischen zwei
+     * Stellen immer die rechte gewaehlt wird. poly (Grad 20 an aequidistanten
+     * Stellen) verliert durch Ausloeschung einige Stellen und wird mit 1e-6
+     * statt 1e-8 geprueft.
+     */
+    private static void testKernelProperties() {
+        int n = 20;
+        double a = -2, b = 3;
+        Random random = new Random(1);
+        double[] y = new double[n + 1];
+        double[] mirrored = new double[n + 1];
+        double[] constant = new double[n + 1];
+        double[] line = new double[n + 1];
+        for (int i = 0; i <= n; i++) {
+            y[i] = random.nextDouble();
+            constant[i] = 0.7;
+            line[i] = 3 * (a + i * (b - a) / n) + 1;
+        }
+        for (int i = 0; i <= n; i++) {
+            mirrored[i] = y[n - i];
+        }
+
+        for (String name : KernelRegistry.getNames()) {
+            InterpolationKernel kernel = KernelRegistry.get(name);
+            InterpolationMethod p = kernel.createInterpolation();
+            p.init(a, b, n, y);
+            InterpolationMethod q = kernel.createInterpolation();
+            q.init(a, b, n, mirrored);
+            double nodeError = 0, symmetryError = 0;
+            for (int i = 0; i <= n; i++) {
+                nodeError = Math.max(nodeError,
+                        Math.abs(p.evaluate(a + i * (b - a) / n) - y[i]));
+            }
+            for (int k = 0; k <= 1000; k++) {
+                double z = a + k * (b - a) / 1000;
+                symmetryError = Math.max(symmetryError,
+                        Math.abs(p.evaluate(z) - q.evaluate(a + b - z)));
+            }
+
+            p.init(a, b, n, constant);
+            double constantError = 0;
+            for (int k = 0; k <= 1000; k++) {
+                constantError = Math.max(constantError,
+                        Math.abs(p.evaluate(a + k * (b - a) / 1000) - 0.7));
+            }
+            double limit = name.equals("poly") ? 1e-6 : 1e-8;
+            boolean symmetric = !name.equals("nearest");
+            check(nodeError < limit && (!symmetric || symmetryError < limit)
+                    && constantError < limit, name + ": " + nodeError + ", "
+                    + (symmetric ? symmetryError + ", " : "") + constantError
+                    + " sollten kleiner als " + limit + " sein");
+
+            if (name.equals("linear") || name.equals("poly")
+                    || name.equals("catmull-rom")) {
+                p.init(a, b, n, line);
+                double from = name.equals("catmull-rom") ? a + (b - a) / n : a;
+                double to = name.equals("catmull-rom") ? b - (b - a) / n : b;
+                double lineError = 0;
+                for (int k = 0; k <= 1000; k++) {
+                    double z = from + k * (to - from) / 1000;
+                    lineError = Math.max(lineError,
+                            Math.abs(p.evaluate(z) - (3 * z + 1)));
+                }
+                check(lineError < 1e-12, name + ": " + lineError
+                        + " sollte kleiner als 1e-12 sein");
+            }
+        }
+        System.out.println("-------------------------------");
+    }
+
+    /**
+     * Skaliert das Testbild auf seine eigene Groesse, was bei allen Kernen
+     * ausser poly das Bild unveraendert lassen muss (das Polynom vom Grad 319
+     * ist an aequidistanten Stellen numerisch nicht stabil), und ein
+     * einfarbiges Bild, das einfarbig bleiben muss
+     */
+    private static void testPictureProperties() {
+        Picture original;
+        try {
+            original = new Picture("src/bilder/test.bmp");
+        } catch (java.io.IOException e) {
+            check(false, "Testbild nicht lesbar: " + e.getMessage());
+            return;
+        }
+        for (int mode = 0; KernelRegistry.get(mode) != null; mode++) {
+            String name = KernelRegistry.get(mode).getName();
+            if (!name.equals("poly")) {
+                Picture same = new Picture(original.getImage());
+                same.scale(same.getWidth(), same.getHeight(), mode);
+                int diff = Regression_Interpolation.maxDifference(
+                        original.getImage(), same.getImage());
+                check(diff == 0, name + ": " + diff + " sollte sein: 0");
+            }
+
+            Picture plain = new Picture(37, 23);
+            for (int y = 1; y <= 23; y++) {
+                for (int x = 1; x <= 37; x++) {
+                    plain.setPixel(x, y, 0.3, 0.6, 0.9);
+                }
+            }
+            plain.scale(80, 11, mode);
+            int colors = 0;
+            int first = plain.getImage().getRGB(0, 0);
+            for (int y = 0; y < 11; y++) {
+                for (int x = 0; x < 80; x++) {
+                    if (plain.getImage().getRGB(x, y) != first)
+                        colors++;
+                }
+            }
+            check(colors == 0, name + ": " + colors
+                    + " abweichende Pixel im einfarbigen Bild, sollte sein: 0");
+        }
         System.out.println("-------------------------------");
     }
 
+    /**
+     * Prueft GeneralCubicSpline an ungleichmaessigen Stuetzstellen fuer alle
+     * Randbedingungen: CLAMPED mit den passenden Ableitungen und NOT_A_KNOT
+     * geben ein kubisches Polynom exakt wieder, NATURAL eine Gerade, PERIODIC
+     * ist periodisch und in x_0 = x_n zweimal stetig differenzierbar. Nach
+     * PERIODIC mit y_n != y_0 muss jede andere Randbedingung wieder y_n
+     * interpolieren.
+     */
+    private static void testGeneralSpline() {
+        int n = 12;
+        double[] x = new double[n + 1];
+        double[] cubic = new double[n + 1];
+        double[] line = new double[n + 1];
+        double[] periodic = new double[n + 1];
+        Random random = new Random(2);
+        for (int i = 0; i <= n; i++) {
+            x[i] = i + (i > 0 && i < n ? 0.8 * random.nextDouble() - 0.4 : 0);
+            cubic[i] = x[i] * x[i] * x[i] - 2 * x[i] * x[i] + x[i] + 1;
+            line[i] = 0.5 * x[i] - 2;
+            periodic[i] = Math.sin(2 * Math.PI * x[i] / n);
+        }
+
+        GeneralCubicSpline clamped = new GeneralCubicSpline(x, cubic,
+                GeneralCubicSpline.CLAMPED);
+        clamped.setBoundaryConditions(1, 3 * n * n - 4 * n + 1);
+        GeneralCubicSpline notAKnot = new GeneralCubicSpline(x, cubic,
+                GeneralCubicSpline.NOT_A_KNOT);
+        GeneralCubicSpline natural = new GeneralCubicSpline(x, line,
+                GeneralCubicSpline.NATURAL);
+        double clampedError = 0, notAKnotError = 0, naturalError = 0;
+        for (int k = 0; k <= 1000; k++) {
+            double z = k * n / 1000.;
+            double f = z * z * z - 2 * z * z + z + 1;
+            clampedError = Math.max(clampedError,
+                    Math.abs(clamped.evaluate(z) - f));
+            notAKnotError = Math.max(notAKnotError,
+                    Math.abs(notAKnot.evaluate(z) - f));
+            naturalError = Math.max(naturalError,
+                    Math.abs(natural.evaluate(z) - (0.5 * z - 2)));
+        }
+        check(clampedError < 1e-9, "CLAMPED: " + clampedError
+                + " sollte kleiner als 1e-9 sein");
+        check(notAKnotError < 1e-9, "NOT_A_KNOT: " + notAKnotError
+                + " sollte kleiner als 1e-9 sein");
+        check(naturalError < 1e-12, "NATURAL: " + naturalError
+                + " sollte kleiner als 1e-12 sein");
+
+        GeneralCubicSpline p = new GeneralCubicSpline(x, periodic,
+                GeneralCubicSpline.PERIODIC);
+        double[] m = p.getSecondDerivatives();
+        double eps = 1e-6;
+        double left = (p.evaluate(x[0] + eps) - p.evaluate(x[0])) / eps;
+        double right = (p.evaluate(x[n]) - p.evaluate(x[n] - eps)) / eps;
+        double periodError = 0, nodeError = 0;
+        for (int k = 0; k <= 1000; k++) {
+            double z = k * n / 1000.;
+            periodError = Math.max(periodError,
+                    Math.abs(p.evaluate(z + n) - p.evaluate(z)));
+        }
+        for (int i = 0; i <= n; i++) {
+            nodeError = Math.max(nodeError, Math.abs(p.evaluate(x[i])
+                    - periodic[i]));
+        }
+        check(nodeError < 1e-12 && periodError < 1e-12
+                        && Math.abs(left - right) < 1e-5 && m[0] == m[n],
+                "PERIODIC: " + nodeError + ", " + periodError + ", "
+                        + Math.abs(left - right) + ", " + Math.abs(m[0] - m[n])
+                        + " sollten kleiner als 1e-12, 1e-12, 1e-5, 0 sein");
+
+        double[] open = Arrays.copyOf(line, n + 1);
+        p = new GeneralCubicSpline(x, open, GeneralCubicSpline.PERIODIC);
+        p.setBoundaryCondition(GeneralCubicSpline.NATURAL);
+        double reopened = 0;
+        for (int i = 0; i <= n; i++) {
+            reopened = Math.max(reopened, Math.abs(p.evaluate(x[i]) - line[i]));
+        }
+        check(reopened < 1e-12 && Arrays.equals(open, line),
+                "NATURAL nach PERIODIC: " + reopened
+                        + " sollte kleiner als 1e-12 sein");
+        System.out.println("-------------------------------");
+    }
+
+    /**
+     * Prueft GridInterpolation2D und ColorLookupTable: beide Kerne geben die
+     * Gitterwerte exakt wieder, der lineare Kern zudem jede bilineare
+     * Funktion a + b x + c y + d x y. Eine Identitaets-LUT muss das Testbild
+     * in beiden Modi unveraendert lassen.
+     */
+    private static void testGridInterpolation() {
+        int columns = 7, rows = 5;
+        double xMin = -1, xMax = 2, yMin = 0.5, yMax = 1.5;
+        double hx = (xMax - xMin) / (columns - 1);
+        double hy = (yMax - yMin) / (rows - 1);
+        Random random = new Random(5);
+        double[] values = new double[columns * rows];
+        double[] bilinear = new double[columns * rows];
+        for (int j = 0; j < rows; j++) {
+            for (int i = 0; i < columns; i++) {
+                double x = xMin + i * hx, y = yMin + j * hy;
+                values[j * columns + i] = random.nextDouble();
+                bilinear[j * columns + i] = 0.3 - 2 * x + 0.7 * y + 1.5 * x * y;
+            }
+        }
+        for (String name : new String[]{"linear", "catmull-rom"}) {
+            GridInterpolation2D grid = new GridInterpolation2D(
+                    KernelRegistry.get(name), xMin, xMax, columns, yMin, yMax,
+                    rows, values);
+            double nodeError = 0;
+            for (int j = 0; j < rows; j++) {
+                for (int i = 0; i < columns; i++) {
+                    nodeError = Math.max(nodeError, Math.abs(grid.evaluate(
+                            xMin + i * hx, yMin + j * hy)
+                            - values[j * columns + i]));
+                }
+            }
+            check(nodeError < 1e-12, "Gitter " + name + ": " + nodeError
+                    + " sollte kleiner als 1e-12 sein");
+        }
+
+        GridInterpolation2D grid = new GridInterpolation2D(
+                KernelRegistry.get("linear"), xMin, xMax, columns, yMin, yMax,
+                rows, bilinear);
+        double[] xs = new double[1000], ys = new double[1000];
+        for (int k = 0; k < xs.length; k++) {
+            xs[k] = xMin + (xMax - xMin) * random.nextDouble();
+            ys[k] = yMin + (yMax - yMin) * random.nextDouble();
+        }
+        double[] out = new double[xs.length];
+        grid.evaluate(xs, ys, out);
+        double error = 0;
+        for (int k = 0; k < xs.length; k++) {
+            error = Math.max(error, Math.abs(out[k] - (0.3 - 2 * xs[k]
+                    + 0.7 * ys[k] + 1.5 * xs[k] * ys[k])));
+        }
+        check(error < 1e-12, "bilinear: " + error
+                + " sollte kleiner als 1e-12 sein");
+
+        Picture picture;
+        try {
+            picture = new Picture("src/bilder/test.bmp");
+        } catch (IOException e) {
+            check(false, "Testbild nicht lesbar: " + e.getMessage());
+            return;
+        }
+        int width = picture.getWidth(), height = picture.getHeight();
+        int[] original = picture.getImage().getRGB(0, 0, width, height, null,
+                0, width);
+        ColorLookupTable lut = ColorLookupTable.identity(17);
+        for (int mode : new int[]{GridInterpolation3D.TETRAHEDRAL,
+                GridInterpolation3D.TRILINEAR}) {
+            lut.setMode(mode);
+            int[] mapped = Arrays.copyOf(original, original.length);
+            lut.apply(mapped, 0, mapped.length);
+            int changed = 0;
+            for (int i = 0; i < mapped.length; i++) {
+                if (mapped[i] != original[i])
+                    changed++;
+            }
+            check(changed == 0, "Identitaets-LUT Modus " + mode + ": "
+                    + changed + " veraenderte Pixel, sollte sein: 0");
+        }
+        System.out.println("-------------------------------");
+    }
+
+    /**
+     * Bilder mit 16 Bit bzw. float je Band werden ueber readComponents und
+     * writeComponents in voller Genauigkeit skaliert. In Originalgroesse mit
+     * dem naechsten Nachbarn muessen alle Abtastwerte unveraendert bleiben,
+     * auch float-Werte ausserhalb von [0,1]. Alpha ist dabei nie 0, da voll
+     * transparente Pixel ihre Farbe nicht behalten.
+     */
+    private static void testHighDepth() {
+        ColorSpace srgb = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+        ColorSpace gray = ColorSpace.getInstance(ColorSpace.CS_GRAY);
+        ComponentColorModel[] models = {
+                new ComponentColorModel(srgb, false, false,
+                        Transparency.OPAQUE, DataBuffer.TYPE_USHORT),
+                new ComponentColorModel(srgb, true, false,
+                        Transparency.TRANSLUCENT, DataBuffer.TYPE_USHORT),
+                new ComponentColorModel(srgb, false, false,
+                        Transparency.OPAQUE, DataBuffer.TYPE_FLOAT),
+                new ComponentColorModel(gray, false, false,
+                        Transparency.OPAQUE, DataBuffer.TYPE_FLOAT)};
+        String[] names = {"16 Bit RGB", "16 Bit RGBA", "float RGB",
+                "float grau"};
+        int width = 23, height = 17;
+        Random random = new Random(6);
+        for (int m = 0; m < models.length; m++) {
+            ComponentColorModel cm = models[m];
+            WritableRaster raster = cm.createCompatibleWritableRaster(width,
+                    height);
+            boolean floating = cm.getTransferType() == DataBuffer.TYPE_FLOAT;
+            int bands = raster.getNumBands();
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    for (int b = 0; b < bands; b++) {
+                        if (floating)
+                            raster.setSample(x, y, b, (float) (4 * random
+                                    .nextDouble() - 0.5));
+                        else if (cm.hasAlpha() && b == bands - 1)
+                            raster.setSample(x, y, b,
+                                    1 + random.nextInt(65535));
+                        else
+                            raster.setSample(x, y, b, random.nextInt(65536));
+                    }
+                }
+            }
+            BufferedImage image = new BufferedImage(cm, raster, false, null);
+            double[] before = raster.getPixels(0, 0, width, height,
+                    (double[]) null);
+            Picture picture = new Picture(image);
+            picture.scale(width, height, KernelRegistry.get("nearest"));
+            BufferedImage result = picture.getImage();
+            double[] after = result.getRaster().getPixels(0, 0, width, height,
+                    (double[]) null);
+            int changed = 0;
+            for (int i = 0; i < before.length; i++) {
+                if (before[i] != after[i])
+                    changed++;
+            }
+            check(result.getColorModel().getTransferType()
+                            == cm.getTransferType() && changed == 0,
+                    names[m] + ": " + changed
+                            + " veraenderte Abtastwerte, sollte sein: 0");
+        }
+        System.out.println("-------------------------------");
+    }
+
+    /**
+     * Die Kennzahlen im Textformat muessen auch unter einer deutschen
+     * Standard-Locale Dezimalpunkte verwenden, sonst lehnt Prometheus sie ab.
+     * ScaleMetrics enthaelt hier bereits die Aufrufe aus
+     * testPictureProperties.
+     */
+    private static void testMetricsFormat() {
+        Locale saved = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(1234567);
+            int commas = decimalCommas(histogram.format("x"));
+            check(commas == 0, "LatencyHistogram: " + commas
+                    + " Werte mit Dezimalkomma, sollte sein: 0");
+            commas = decimalCommas(ScaleMetrics.format());
+            check(commas == 0, "ScaleMetrics: " + commas
+                    + " Werte mit Dezimalkomma, sollte sein: 0");
+        } finally {
+            Locale.setDefault(saved);
+        }
+        System.out.println("-------------------------------");
+    }
+
+    /**
+     * Prueft BatchScaler: ein in Streifen geteilter Auftrag muss dasselbe Bild
+     * wie Picture.scale im Ganzen liefern, wartende Auftraege starten in der
+     * gewaehlten Reihenfolge, und ein wartender Auftrag laesst sich
+     * abbrechen. Fuer Reihenfolge und Abbruch haelt ein erster Auftrag den
+     * einzigen Thread fest, bis alle anderen eingereiht sind.
+     */
+    private static void testBatchScaler() {
+        try {
+            Picture original = new Picture("src/bilder/test.bmp");
+            int width = 1280, height = 900;
+            InterpolationKernel kernel = KernelRegistry.get("lanczos3");
+            BatchScaler scaler = new BatchScaler(4, BatchScaler.DEADLINE);
+            BatchScaler.Job job = scaler.submit(original, width, height,
+                    kernel);
+            Picture whole = new Picture(original.getImage());
+            whole.scale(new Rectangle(0, 0, original.getWidth(),
+                    original.getHeight()), width, height, kernel);
+            int diff = Regression_Interpolation.maxDifference(
+                    whole.getImage(), job.get(60, TimeUnit.SECONDS).getImage());
+            scaler.shutdown();
+            check((long) width * height >= BatchScaler.SPLIT_PIXELS
+                    && diff == 0, "Streifen: " + diff + " sollte sein: 0");
+
+            String[] expected = {"B D A C", "B C D A", "A C D B"};
+            for (int order = BatchScaler.DEADLINE;
+                 order <= BatchScaler.SMALLEST_FIRST; order++) {
+                String started = runOrder(order);
+                check(started.equals(expected[order]), "Reihenfolge "
+                        + order + ": " + started + " sollte sein: "
+                        + expected[order]);
+            }
+
+            List<String> log = Collections.synchronizedList(
+                    new ArrayList<String>());
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            scaler = new BatchScaler(1, BatchScaler.DEADLINE);
+            Picture small = new Picture(5, 5);
+            BatchScaler.Job blocker = scaler.submit(small, 8, 8,
+                    new RecordingKernel("blocker", log, running, release));
+            running.await(10, TimeUnit.SECONDS);
+            BatchScaler.Job waiting = scaler.submit(small, 8, 8,
+                    new RecordingKernel("waiting", log, null, null));
+            int before = scaler.getWaitingJobs();
+            boolean cancelled = waiting.cancel(false);
+            int after = scaler.getWaitingJobs();
+            release.countDown();
+            blocker.get(10, TimeUnit.SECONDS);
+            boolean thrown = false;
+            try {
+                waiting.get(10, TimeUnit.SECONDS);
+            } catch (CancellationException e) {
+                thrown = true;
+            }
+            scaler.shutdown();
+            scaler.awaitTermination(10, TimeUnit.SECONDS);
+            check(cancelled && waiting.isCancelled() && waiting.isDone()
+                            && thrown && before == 1 && after == 0
+                            && !log.contains("waiting")
+                            && !blocker.cancel(false),
+                    "Abbruch: " + cancelled + ", " + thrown + ", " + log
+                            + " sollte sein: true, true, [blocker]");
+        } catch (Exception e) {
+            check(false, "BatchScaler: " + e);
+        }
+        System.out.println("-------------------------------");
+    }
+
+    /**
+     * Ein 16-Bit-PNG in Originalgroesse durch StreamingScaler muss dieselben
+     * 8-Bit-Werte wie Picture.scale liefern, und eine falsche Pruefsumme im
+     * IDAT-Chunk muss eine IOException ausloesen
+     */
+    private static void testStreamingPng() {
+        try {
+            int width = 40, height = 30;
+            ComponentColorModel cm = new ComponentColorModel(
+                    ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false,
+                    Transparency.OPAQUE, DataBuffer.TYPE_USHORT);
+            WritableRaster raster = cm.createCompatibleWritableRaster(width,
+                    height);
+            Random random = new Random(3);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    for (int c = 0; c < 3; c++) {
+                        raster.setSample(x, y, c, random.nextInt(65536));
+                    }
+                }
+            }
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(new BufferedImage(cm, raster, false, null), "png",
+                    png);
+            byte[] data = png.toByteArray();
+
+            StreamingScaler scaler = new StreamingScaler(KernelRegistry
+                    .get("linear"));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            scaler.scale(new ByteArrayInputStream(data), out, width, height,
+                    "png");
+            BufferedImage streamed = ImageIO.read(new ByteArrayInputStream(
+                    out.toByteArray()));
+            Picture picture = new Picture(ImageIO.read(
+                    new ByteArrayInputStream(data)));
+            picture.scale(width, height, KernelRegistry.get("linear"));
+            int diff = Regression_Interpolation.maxDifference(
+                    picture.getImage(), streamed);
+            check(diff == 0, "16-Bit-PNG: " + diff + " sollte sein: 0");
+
+            /* Pruefsumme hinter den Daten des IDAT-Chunks verfaelschen */
+            int idat = 8;
+            while (!new String(data, idat + 4, 4, "US-ASCII").equals("IDAT")) {
+                idat += 12 + readInt(data, idat);
+            }
+            data[idat + 8 + readInt(data, idat)] ^= 1;
+            String error = "keine";
+            try {
+                scaler.scale(new ByteArrayInputStream(data),
+                        new ByteArrayOutputStream(), width, height, "png");
+            } catch (IOException e) {
+                error = e.getMessage();
+            }
+            check(error.contains("Pruefsumme"), "falsche Pruefsumme: Fehler "
+                    + error);
+        } catch (IOException e) {
+            check(false, "StreamingScaler: " + e);
+        }
+        System.out.println("-------------------------------");
+    }
+
+    private static int readInt(byte[] data, int i) {
+        return ((data[i] & 0xFF) << 24) | ((data[i + 1] & 0xFF) << 16)
+                | ((data[i + 2] & 0xFF) << 8) | (data[i + 3] & 0xFF);
+    }
+
+    /**
+     * Reiht hinter einem blockierenden Auftrag vier Auftraege A bis D mit
+     * den Groessen 100, 900, 400, 400 und den Fristen 3000, 1000, keine, 1000
+     * ein und gibt die Namen in der Reihenfolge ihres Starts zurueck
+     */
+    private static String runOrder(int order) throws Exception {
+        List<String> log = Collections.synchronizedList(
+                new ArrayList<String>());
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchScaler scaler = new BatchScaler(1, order);
+        Picture small = new Picture(5, 5);
+        scaler.submit(small, 8, 8, new RecordingKernel("blocker", log,
+                running, release));
+        running.await(10, TimeUnit.SECONDS);
+        int[] sizes = {10, 30, 20, 20};
+        long[] deadlines = {3000, 1000, Long.MAX_VALUE, 1000};
+        BatchScaler.Job[] jobs = new BatchScaler.Job[sizes.length];
+        for (int i = 0; i < jobs.length; i++) {
+            jobs[i] = scaler.submit(small, sizes[i], sizes[i],
+                    new RecordingKernel(String.valueOf((char) ('A' + i)), log,
+                            null, null), deadlines[i]);
+        }
+        release.countDown();
+        for (BatchScaler.Job job : jobs) {
+            job.get(10, TimeUnit.SECONDS);
+        }
+        scaler.shutdown();
+        StringBuilder result = new StringBuilder();
+        for (String name : log.subList(1, log.size())) {
+            result.append(result.length() > 0 ? " " : "").append(name);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Linearer Kern, der beim ersten Aufruf seinen Namen in log eintraegt
+     * und, falls angegeben, running herunterzaehlt und auf release wartet
+     */
+    static class RecordingKernel implements InterpolationKernel {
+        private final InterpolationKernel linear = KernelRegistry.get("linear");
+        private final String name;
+        private final List<String> log;
+        private final CountDownLatch running, release;
+        private boolean started;
+
+        RecordingKernel(String name, List<String> log, CountDownLatch running,
+                        CountDownLatch release) {
+            this.name = name;
+            this.log = log;
+            this.running = running;
+            this.release = release;
+        }
+
+        private synchronized void start() {
+            if (started)
+                return;
+            started = true;
+            log.add(name);
+            if (running != null) {
+                running.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        public String getName() {
+            start();
+            return name;
+        }
+
+        public double getSupport() {
+            start();
+            return linear.getSupport();
+        }
+
+        public boolean isSeparable() {
+            start();
+            return linear.isSeparable();
+        }
+
+        public boolean hasWeightTable() {
+            start();
+            return linear.hasWeightTable();
+        }
+
+        public double weight(double t) {
+            start();
+            return linear.weight(t);
+        }
+
+        public InterpolationMethod createInterpolation() {
+            start();
+            return linear.createInterpolation();
+        }
+    }
+
+    /**
+     * Zaehlt die Zeilen, deren Wert (nach dem letzten Leerzeichen) ein Komma
+     * enthaelt. Kommas zwischen Labels zaehlen nicht.
+     */
+    private static int decimalCommas(String metrics) {
+        int count = 0;
+        for (String line : metrics.split("\n")) {
+            if (line.substring(line.lastIndexOf(' ') + 1).indexOf(',') >= 0)
+                count++;
+        }
+        return count;
+    }
+
     public static void testSplines() {
         CubicSpline spl = new CubicSpline();
         double[] y = {2, 0, 2, 3};
         spl.init(-1, 2, 3, y);
         spl.setBoundaryConditions(9, 0);
-        System.out.println(Arrays.toString(spl.getDerivatives())
+        double[] expected = {9, -3, 3, 0};
+        double error = 0;
+        for (int i = 0; i < expected.length; i++) {
+            error = Math.max(error,
+                    Math.abs(spl.getDerivatives()[i] - expected[i]));
+        }
+        check(error < 1e-12, Arrays.toString(spl.getDerivatives())
                 + " sollte sein: [9.0, -3.0, 3.0, 0.0].");
     }
 }
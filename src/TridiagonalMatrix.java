@@ -149,4 +149,46 @@ public class TridiagonalMatrix {
 
         return x;
     }
+
+    /**
+     * Loest das System Ax=b fuer die zyklisch tridiagonale Matrix A, die aus
+     * dieser Matrix mit den zusaetzlichen Eckelementen A(dim,1) = alpha und
+     * A(1,dim) = beta entsteht, wie sie z.B. bei periodischen Splines
+     * auftritt. Die Ecken werden nach Sherman-Morrison als Korrektur vom Rang
+     * eins behandelt, es werden also zwei Systeme mit dem Thomas-Algorithmus
+     * geloest. Fuer dim = 2 werden die Ecken zu den Nebendiagonalen addiert.
+     */
+    public double[] solveCyclicLinearSystem(double[] b, double alpha,
+                                            double beta) {
+        if (dim == 1)
+            return new double[]{b[0] / (diag[0] + alpha + beta)};
+        if (dim == 2) {
+            TridiagonalMatrix m = new TridiagonalMatrix(this);
+            m.lower[0] += alpha;
+            m.upper[0] += beta;
+            return m.solveLinearSystem(b);
+        }
+
+        /*
+         * A = T + u v^T mit u = (gamma, 0, ..., 0, alpha) und
+         * v = (1, 0, ..., 0, beta / gamma)
+         */
+        double gamma = -diag[0];
+        TridiagonalMatrix t = new TridiagonalMatrix(this);
+        t.diag[0] -= gamma;
+        t.diag[dim - 1] -= alpha * beta / gamma;
+
+        double[] x = t.solveLinearSystem(b);
+        double[] u = new double[dim];
+        u[0] = gamma;
+        u[dim - 1] = alpha;
+        double[] z = t.solveLinearSystem(u);
+
+        double factor = (x[0] + beta * x[dim - 1] / gamma)
+                / (1 + z[0] + beta * z[dim - 1] / gamma);
+        for (int i = 0; i < dim; i++) {
+            x[i] -= factor * z[i];
+        }
+        return x;
+    }
 }